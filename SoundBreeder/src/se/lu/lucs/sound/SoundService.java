@@ -1,6 +1,10 @@
 package se.lu.lucs.sound;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import javax.servlet.ServletException;
@@ -8,14 +12,31 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
 public class SoundService extends HttpServlet {
     private final static Generator GENERATOR = new Generator();
 
-    private final static AudioFormat FORMAT = new AudioFormat( 44100, 16, 1, true, false );
+    /**
+     * Length of RIFF and data chunks of unknown length, which players treat as "read until the end of the stream"
+     */
+    private final static int UNKNOWN_LENGTH = 0xFFFFFFFF;
+
+    /**
+     * Writes the header of a PCM WAVE file whose length is not known yet. {@link AudioSystem#write} refuses to write
+     * streams of unspecified length
+     */
+    private static void writeWaveHeader( OutputStream out, AudioFormat format ) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate( 44 ).order( ByteOrder.LITTLE_ENDIAN );
+        header.put( "RIFF".getBytes( StandardCharsets.US_ASCII ) ).putInt( UNKNOWN_LENGTH ).put( "WAVE".getBytes( StandardCharsets.US_ASCII ) );
+        header.put( "fmt ".getBytes( StandardCharsets.US_ASCII ) ).putInt( 16 ).putShort( (short) 1 ).putShort( (short) format.getChannels() );
+        header.putInt( (int) format.getSampleRate() ).putInt( (int) format.getFrameRate() * format.getFrameSize() );
+        header.putShort( (short) format.getFrameSize() ).putShort( (short) format.getSampleSizeInBits() );
+        header.put( "data".getBytes( StandardCharsets.US_ASCII ) ).putInt( UNKNOWN_LENGTH );
+        out.write( header.array() );
+    }
 
     @Override
     protected void doGet( HttpServletRequest req, HttpServletResponse resp ) throws ServletException, IOException {
@@ -25,9 +46,19 @@ public class SoundService extends HttpServlet {
         final int number = Integer.parseInt( numberString );
         final BoutParameters p = par.get( number );
 
-        final List<Double> ampl = Generator.generateBout( p );
-
-        AudioSystem.write( Generator.convertAmplitude( ampl, FORMAT ), AudioFileFormat.Type.WAVE, resp.getOutputStream() );
+        final AudioFormat format = new AudioFormat( p.sampleRate, 16, 1, true, false );
+        resp.setContentType( "audio/wav" );
+        final OutputStream out = resp.getOutputStream();
+        writeWaveHeader( out, format );
 
+        // stream the bout while it is rendered instead of waiting for all syllables. The context only lives as long as
+        // the request, so the container's threads do not keep scratch buffers
+        final byte[] buffer = new byte[8192];
+        try (AudioInputStream stream = Generator.streamBout( p, format, new SynthesisContext() )) {
+            int read;
+            while ((read = stream.read( buffer )) > 0) {
+                out.write( buffer, 0, read );
+            }
+        }
     }
 }
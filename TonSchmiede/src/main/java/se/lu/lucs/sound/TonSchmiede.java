@@ -6,6 +6,7 @@ import java.awt.event.ActionEvent;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -34,7 +35,7 @@ public class TonSchmiede extends JPanel {
     private final static int POPULATION_SIZE = 6;
     private final static int ROW_SIZE = 3;
 
-    public static final AudioFormat FORMAT = new AudioFormat( 44100, 16, 1, true, false );
+    public static final AudioFormat FORMAT = new AudioFormat( AcousticParameters.DEFAULT_SAMPLE_RATE, 16, 1, true, false );
 
     public static void main( String[] args ) {
         try {
@@ -98,14 +99,16 @@ public class TonSchmiede extends JPanel {
 
             final JPanel audioClips = new JPanel();
             final GridLayout layout = new GridLayout( POPULATION_SIZE / ROW_SIZE, ROW_SIZE );
+            final List<BoutParameters> bouts = new ArrayList<>( POPULATION_SIZE );
+            for (int i = 0; i < POPULATION_SIZE; i++) {
+                bouts.add( generateBout() );
+            }
+            final List<double[]> curves = Generator.generateBouts( bouts );
             for (int i = 0; i < POPULATION_SIZE; i++) {
                 final SoundPanel p = new SoundPanel( this );
                 soundPanels.add( p );
-                final BoutParameters b = generateBout();
-
-                final List<Double> curve = Generator.generateBout( b );
-                p.setAmplitude( curve );
-                p.setParameters( b );
+                p.setAmplitude( Generator.toList( curves.get( i ) ) );
+                p.setParameters( bouts.get( i ) );
                 audioClips.add( p );
             }
 
@@ -220,7 +223,7 @@ public class TonSchmiede extends JPanel {
             }
 
             try {
-                final long ms = (long) (length / 2.0 / 44.1);
+                final long ms = (long) (length / 2.0 / (FORMAT.getSampleRate() / 1000));
                 Thread.sleep( ms );
             }
             catch (final InterruptedException e1) {
@@ -247,11 +250,11 @@ public class TonSchmiede extends JPanel {
     private void updatePanels( List<BoutParameters> map ) {
         assert map.size() == POPULATION_SIZE;
 
+        final List<double[]> curves = Generator.generateBouts( map );
         final Iterator<SoundPanel> iter = soundPanels.iterator();
         for (int i = 0; i < map.size(); i++) {
             final SoundPanel sp = iter.next();
-            final List<Double> ampl = Generator.generateBout( map.get( i ) );
-            sp.setAmplitude( ampl );
+            sp.setAmplitude( Generator.toList( curves.get( i ) ) );
             sp.setParameters( map.get( i ) );
         }
 
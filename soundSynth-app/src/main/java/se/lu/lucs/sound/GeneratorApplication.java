@@ -5,15 +5,16 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
@@ -89,25 +90,15 @@ public class GeneratorApplication extends JFrame {
 
     }
 
-    private static byte[] soundToBytes( List<Double> sound ) {
-        final Double max = sound.stream().collect( Collectors.summarizingDouble( Double::doubleValue ) ).getMax();
-        final byte[] audioBytes = new byte[sound.size() * Short.BYTES];
-        int index = 0;
-        for (final Double d : sound) {
-
-            final int v = (int) (d / max * Short.MAX_VALUE);
-
-            audioBytes[index++] = (byte) v;
-            audioBytes[index++] = (byte) (v >> 8);
-
-        }
-        return audioBytes;
-    }
-
     private final BoutParameters boutParameters;
 
     private final List<Double> sound;
 
+    /**
+     * The seed of the displayed draft, so that playing and saving render the same bout in final quality
+     */
+    private long renderSeed;
+
     private List<Double> contour;
 
     private XYSeries amplitudeDataSet;
@@ -126,7 +117,7 @@ public class GeneratorApplication extends JFrame {
         setDefaultCloseOperation( DISPOSE_ON_CLOSE );
         setSize( 1280, 1024 );
         setJMenuBar( createMenuBar() );
-        final AudioFormat audioFormat = new AudioFormat( 44100, 16, 1, true, false );
+        final AudioFormat audioFormat = new AudioFormat( AcousticParameters.DEFAULT_SAMPLE_RATE, 16, 1, true, false );
         try {
             audioSource = AudioSystem.getSourceDataLine( audioFormat );
             audioSource.open( audioFormat );
@@ -302,16 +293,35 @@ public class GeneratorApplication extends JFrame {
 
     private void playSound() {
 
-        final byte[] audioBytes = soundToBytes( sound );
-        audioSource.start();
-        audioSource.write( audioBytes, 0, audioBytes.length );
-        audioSource.flush();
-        audioSource.stop();
+        final byte[] buffer = new byte[4096];
+        try (InputStream stream = new BoutInputStream( Generator.planBout( boutParameters, new RandomStream( renderSeed ) ) )) {
+            audioSource.start();
+            int read;
+            while ((read = stream.read( buffer )) > 0) {
+                audioSource.write( buffer, 0, read );
+            }
+            audioSource.drain();
+            audioSource.stop();
+        }
+        catch (final IOException e) {
+            handleException( e );
+        }
 
     }
 
+    /**
+     * Saves the bytes that are played, so the file sounds exactly like the playback
+     */
     private void saveSound( File file ) throws IOException {
-        final byte[] audioBytes = soundToBytes( sound );
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream stream = new BoutInputStream( Generator.planBout( boutParameters, new RandomStream( renderSeed ) ) )) {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read( buffer )) > 0) {
+                bytes.write( buffer, 0, read );
+            }
+        }
+        final byte[] audioBytes = bytes.toByteArray();
 
         final AudioInputStream stream = new AudioInputStream( new ByteArrayInputStream( audioBytes ), audioSource.getFormat(), audioBytes.length );
         AudioSystem.write( stream, AudioFileFormat.Type.WAVE, file );
@@ -331,7 +341,10 @@ public class GeneratorApplication extends JFrame {
         SwingUtilities.invokeLater( () -> {
             try {
                 sound.clear();
-                sound.addAll( Generator.generateBout( boutParameters ) );
+                // preview a draft, playing and saving render the same bout in final quality
+                renderSeed = new RandomStream().nextLong();
+                final BoutParameters draft = RenderQuality.DRAFT.derive( boutParameters );
+                sound.addAll( Generator.toList( Generator.generateBoutSamples( draft, SynthesisContext.current(), new RandomStream( renderSeed ) ) ) );
                 contour = Generator.getPitchContour( boutParameters.syllableDuration_mean, boutParameters.pitch_start, boutParameters.pitch_anchor,
                                 boutParameters.pitch_end, boutParameters.pitch_anchor_location, boutParameters.femaleVoice );
                 updateDataSet( amplitudeDataSet, sound );
@@ -0,0 +1,19 @@
+package se.lu.lucs.sound;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result reports the allocation rate (gc.alloc.rate.norm, bytes per
+ * operation) next to the throughput. Takes the usual JMH command line, e.g. a regular expression to select benchmarks:
+ * <code>java -jar target/benchmarks.jar Spectral</code>
+ */
+public class Benchmarks {
+    public static void main( String[] args ) throws CommandLineOptionException, RunnerException {
+        new Runner( new OptionsBuilder().parent( new CommandLineOptions( args ) ).addProfiler( GCProfiler.class ).build() ).run();
+    }
+}
@@ -0,0 +1,42 @@
+package se.lu.lucs.sound;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders a complete bout of each {@link Preset}
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BoutBenchmark {
+    @Param( { "SHORT", "LONG", "LOW_PITCH", "BREATHING" } )
+    public Preset preset;
+
+    private BoutParameters parameters;
+
+    @Benchmark
+    public List<Double> generateBout() {
+        return Generator.generateBout( parameters );
+    }
+
+    @Setup
+    public void setUp() {
+        parameters = preset.parameters();
+    }
+}
@@ -0,0 +1,112 @@
+package se.lu.lucs.sound;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every {@link Kernels} loop with the {@link ScalarKernels} and with the Vector API kernels of the soundSynth-vector
+ * module, on arrays of the sizes the synthesis uses. The vector kernels are only on the class path when the benchmarks
+ * are built on JDK 17 or later, see the vector profile of the pom, and the forks add the incubator module for them.
+ *
+ * To compare complete bouts, run the {@link BoutBenchmark} once as is and once with
+ * <code>-jvmArgsAppend -Dse.lu.lucs.sound.kernels=scalar</code>.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector" )
+public class KernelBenchmark {
+    private static final int LENGTH = 4096;
+
+    @Param( { "scalar", "vector" } )
+    public String kernels;
+
+    private Kernels k;
+    private double[] a;
+    private double[] b;
+    private double[] out;
+    private double[] ones;
+    private double[] twoCos;
+    private double[] previous;
+    private double[] current;
+
+    @Benchmark
+    public double correlation() {
+        return k.correlation( a, b, LENGTH );
+    }
+
+    /**
+     * One harmonic of an {@link OscillatorBank} block
+     */
+    @Benchmark
+    public double[] harmonic() {
+        k.harmonic( .5, twoCos, previous, current, out, 0, OscillatorBank.BLOCK_SIZE );
+        return out;
+    }
+
+    /**
+     * The filter multiplication of an STFT frame of the default window, with a filter of ones so that repeated calls
+     * do not reach subnormal numbers
+     */
+    @Benchmark
+    public double[] multiply() {
+        k.multiply( out, 1, ones, 1, AcousticParameters.DEFAULT_WINDOW_LENGTH / 2 - 1 );
+        return out;
+    }
+
+    /**
+     * The overlap-add of an STFT frame of the default window
+     */
+    @Benchmark
+    public double[] multiplyAdd() {
+        k.multiplyAdd( a, b, out, 0, AcousticParameters.DEFAULT_WINDOW_LENGTH / 2 );
+        return out;
+    }
+
+    /**
+     * A scale factor close to 1, so repeated calls neither overflow nor reach subnormal numbers within a run
+     */
+    @Benchmark
+    public double[] scale() {
+        k.scale( out, 0, LENGTH, .999999 );
+        return out;
+    }
+
+    @Setup
+    public void setUp() {
+        if ("scalar".equals( kernels )) {
+            k = new ScalarKernels();
+        }
+        else {
+            k = Kernels.get();
+            if (k instanceof ScalarKernels) {
+                throw new IllegalStateException( "No vector kernels on this JDK, build and run the benchmarks on JDK 17 or later" );
+            }
+        }
+
+        final Random random = new Random( 42 );
+        a = random.doubles( LENGTH ).toArray();
+        b = random.doubles( LENGTH ).toArray();
+        out = random.doubles( LENGTH ).toArray();
+        ones = new double[LENGTH];
+        Arrays.fill( ones, 1 );
+        twoCos = random.doubles( OscillatorBank.BLOCK_SIZE ).map( d -> 2 * Math.cos( 2 * Math.PI * d ) ).toArray();
+        previous = new double[OscillatorBank.BLOCK_SIZE];
+        current = random.doubles( OscillatorBank.BLOCK_SIZE ).toArray();
+    }
+}
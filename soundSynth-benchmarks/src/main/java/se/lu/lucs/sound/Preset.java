@@ -0,0 +1,68 @@
+package se.lu.lucs.sound;
+
+import java.util.EnumSet;
+
+import se.lu.lucs.sound.BoutParameters.BreathingType;
+
+/**
+ * Seeded bouts the benchmarks render: the same bout every time, so runs before and after a change are comparable
+ */
+public enum Preset {
+    /**
+     * A single short syllable
+     */
+    SHORT {
+        @Override
+        void configure( BoutParameters p ) {
+            p.syllableDuration_mean = 100;
+        }
+    },
+    /**
+     * Several long syllables with pauses
+     */
+    LONG {
+        @Override
+        void configure( BoutParameters p ) {
+            p.numberOfSyllables = 4;
+            p.syllableDuration_mean = 800;
+            p.pauseDuration_mean = 150;
+        }
+    },
+    /**
+     * A low, creaky voice, which has many harmonics and glottal cycles
+     */
+    LOW_PITCH {
+        @Override
+        void configure( BoutParameters p ) {
+            p.pitch_start = 60;
+            p.pitch_anchor = 75;
+            p.pitch_end = 55;
+            p.creakyBreathy = -.4;
+            p.nSubharm = 1;
+            p.subharmDep = 30;
+        }
+    },
+    /**
+     * A breathy voice with breathing before, during and after the syllable
+     */
+    BREATHING {
+        @Override
+        void configure( BoutParameters p ) {
+            p.creakyBreathy = .5;
+            p.breathingStrength = .6;
+            p.breathingType = EnumSet.of( BreathingType.BEFORE, BreathingType.DURING, BreathingType.AFTER );
+            p.breathing_dur = 300;
+        }
+    };
+
+    private static final long SEED = 42;
+
+    abstract void configure( BoutParameters p );
+
+    public BoutParameters parameters() {
+        final BoutParameters p = new BoutParameters();
+        configure( p );
+        p.seed = SEED;
+        return p;
+    }
+}
@@ -0,0 +1,87 @@
+package se.lu.lucs.sound;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.lu.lucs.sound.BoutParameters.Formant;
+
+/**
+ * The stages of a syllable that shape its spectrum: building the spectral envelope and the formant envelope, and
+ * filtering a syllable of noise with the envelope. Uses the default parameters, like the generator, with one
+ * {@link SynthesisContext} for all invocations
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SpectralBenchmark {
+    private BoutParameters p;
+    private Formant vowel;
+    private SynthesisContext ctx;
+    private RandomStream random;
+    private double[] signal;
+    private double[] filter;
+
+    @Benchmark
+    public double[] applyFFT() {
+        return Generator.applyFFT( ctx, signal, signal.length, p, filter );
+    }
+
+    /**
+     * A fixed vowel, whose envelope comes from the cache
+     */
+    @Benchmark
+    public double[] formantEnvelopeFixedVowel() {
+        return Generator.getFormantEnvelope( random, vowel, p.femaleVoice, false, p.windowLength_points / 2, p.sampleRate );
+    }
+
+    @Benchmark
+    public double[] formantEnvelopeRandomVowel() {
+        return Generator.getFormantEnvelope( random, null, p.femaleVoice, true, p.windowLength_points / 2, p.sampleRate );
+    }
+
+    @Setup
+    public void setUp() {
+        p = Preset.SHORT.parameters();
+        vowel = new Formant();
+        vowel.f1_freq = 700;
+        vowel.f2_freq = 1200;
+        vowel.f3_freq = 2600;
+        vowel.f4_freq = 3800;
+        vowel.f1_amp = 1;
+        vowel.f2_amp = 1;
+        vowel.f3_amp = .8;
+        vowel.f4_amp = .6;
+        vowel.f1_width = 100;
+        vowel.f2_width = 100;
+        vowel.f3_width = 200;
+        vowel.f4_width = 300;
+        ctx = new SynthesisContext();
+        random = new RandomStream( p.seed );
+
+        signal = new double[p.syllableDuration_mean * p.sampleRate / 1000];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = random.nextDouble() * 2 - 1;
+        }
+        filter = spectralEnvelope();
+    }
+
+    @Benchmark
+    public double[] spectralEnvelope() {
+        return Generator.getSpectralEnvelope( random, p.spectralSlope, p.formantStrength, p.lenRarFilter, p.spectralNoise_strength, p.spanFilter,
+                        p.megaFormant_mean, p.megaFormant_sd, p.megaFormant_strength, p.femaleVoice, p.randomVowel, p.windowLength_points, p.sampleRate,
+                        p.exactFormants, new double[p.windowLength_points / 2] );
+    }
+}
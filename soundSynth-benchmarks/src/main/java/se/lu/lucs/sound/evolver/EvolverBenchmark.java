@@ -0,0 +1,69 @@
+package se.lu.lucs.sound.evolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.lu.lucs.sound.Preset;
+
+/**
+ * Runs one generation of a fresh random population: every genome is rendered once and evaluated with
+ * {@link SpectogramCorrelation}, then {@link Evolver#advancePopulation()} breeds the next generation. Configured as in
+ * {@link Evolver#main(String[])}, but with a single evaluation sample, so this is dominated by the synthesis
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MINUTES )
+@State( Scope.Thread )
+@Warmup( iterations = 3, time = 10 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class EvolverBenchmark {
+    private static final int POPULATION_SIZE = 50;
+
+    private File target;
+    private SpectogramCorrelation fitness;
+    private Evolver evolver;
+
+    @Benchmark
+    public Evolver advancePopulation() {
+        evolver.evolve( 1, Float.MAX_VALUE );
+        return evolver;
+    }
+
+    @Setup( Level.Invocation )
+    public void createPopulation() {
+        evolver = new Evolver( POPULATION_SIZE, fitness );
+        evolver.setCrossoverProbability( .8f );
+        evolver.setMutateProbability( .6f );
+        evolver.setEliteSize( .3f );
+        evolver.setAlwaysEvaluate( true );
+        evolver.setEvaluationSamples( 1 );
+        evolver.getMutationFunction().setMutationStrength( .35 );
+    }
+
+    @Setup
+    public void setUp() throws IOException, UnsupportedAudioFileException {
+        target = FitnessBenchmark.writeTarget( Preset.SHORT );
+        fitness = new SpectogramCorrelation( target );
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.delete();
+    }
+}
@@ -0,0 +1,98 @@
+package se.lu.lucs.sound.evolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.lu.lucs.sound.AcousticParameters;
+import se.lu.lucs.sound.BoutParameters;
+import se.lu.lucs.sound.Generator;
+import se.lu.lucs.sound.Preset;
+
+/**
+ * Evaluates a rendered candidate against a target with the fitness functions. The target is a rendered {@link Preset},
+ * written to a temporary wav file. Note that {@link MorphTargetAmplitude} plays its target when it is constructed, so
+ * its benchmark needs an audio line
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class FitnessBenchmark {
+    /**
+     * Holds the {@link MorphTargetAmplitude}, so only its benchmark fails where there is no audio line
+     */
+    @State( Scope.Thread )
+    public static class MorphTargetState {
+        MorphTargetAmplitude fitness;
+
+        @Setup
+        public void setUp( FitnessBenchmark benchmark ) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+            fitness = new MorphTargetAmplitude( benchmark.target );
+        }
+    }
+
+    /**
+     * Renders the given preset to a temporary wav file at the default sample rate, which is deleted on exit
+     */
+    static File writeTarget( Preset preset ) throws IOException {
+        final File file = File.createTempFile( "target", ".wav" );
+        file.deleteOnExit();
+        final AudioFormat format = new AudioFormat( AcousticParameters.DEFAULT_SAMPLE_RATE, 16, 1, true, false );
+        AudioSystem.write( Generator.convertAmplitude( Generator.generateBoutSamples( preset.parameters() ), format ), AudioFileFormat.Type.WAVE, file );
+        return file;
+    }
+
+    private File target;
+    private SpectogramCorrelation spectogramCorrelation;
+    private double[] candidate;
+    private List<Double> candidateList;
+
+    @Benchmark
+    public Double morphTargetAmplitude( MorphTargetState state ) {
+        return state.fitness.evaluate( candidateList );
+    }
+
+    @Setup
+    public void setUp() throws IOException, UnsupportedAudioFileException {
+        target = writeTarget( Preset.SHORT );
+        spectogramCorrelation = new SpectogramCorrelation( target );
+
+        final BoutParameters p = Preset.SHORT.parameters();
+        p.pitch_anchor = 200;
+        p.seed = p.seed + 1;
+        candidate = Generator.generateBoutSamples( p );
+        candidateList = Generator.toList( candidate );
+    }
+
+    @Benchmark
+    public Double spectogramCorrelation() {
+        return spectogramCorrelation.evaluate( candidate );
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.delete();
+    }
+}
@@ -0,0 +1,33 @@
+package se.lu.lucs.sound.jfr;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import se.lu.lucs.sound.SynthesisEvents;
+import se.lu.lucs.sound.SynthesisProfile;
+
+/**
+ * Reports every stage of the synthesis as a {@link SynthesisStageEvent} while a flight recording has the event enabled.
+ * Found by the generator with {@link java.util.ServiceLoader} when this module is on the class path.
+ */
+public class FlightRecorderEvents extends SynthesisEvents {
+    private static final EventType TYPE = EventType.getEventType( SynthesisStageEvent.class );
+
+    @Override
+    public void commit( SynthesisProfile.Stage stage, long nanos, long samples ) {
+        final SynthesisStageEvent event = new SynthesisStageEvent();
+        event.stage = stage.name();
+        event.nanos = nanos;
+        event.samples = samples;
+        event.commit();
+    }
+
+    @Override
+    public boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return FlightRecorder.isAvailable();
+    }
+}
@@ -0,0 +1,32 @@
+package se.lu.lucs.sound.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import se.lu.lucs.sound.SynthesisProfile;
+
+/**
+ * A flight recorder event for one run of a {@link SynthesisProfile.Stage}. The event is committed when the stage ends,
+ * so its own duration is 0. The time spent is in {@link #nanos}, as the event already has a duration field.
+ *
+ * The event is enabled by default, so any recording has it, e.g. one started with
+ * <code>-XX:StartFlightRecording=filename=synthesis.jfr</code>; <code>jfr print --events SynthesisStage synthesis.jfr</code>
+ * lists the stages.
+ */
+@Name( "se.lu.lucs.sound.SynthesisStage" )
+@Label( "Synthesis Stage" )
+@Category( "Sound Synthesis" )
+@Description( "A stage of the synthesis of a syllable or bout" )
+class SynthesisStageEvent extends jdk.jfr.Event {
+    @Label( "Stage" )
+    String stage;
+
+    @Label( "Time Spent" )
+    @Timespan( Timespan.NANOSECONDS )
+    long nanos;
+
+    @Label( "Samples" )
+    long samples;
+}
@@ -0,0 +1,174 @@
+package se.lu.lucs.sound.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import se.lu.lucs.sound.Kernels;
+
+/**
+ * {@link Kernels} on the incubating Vector API, using the widest vectors the CPU supports (2 double or 4 float lanes on
+ * aarch64 NEON, 4 or 8 on AVX2, 8 or 16 on AVX-512). The remainder of every loop that does not fill a vector is
+ * processed with scalar code.
+ *
+ * Requires JDK 17 or newer started with <code>--add-modules jdk.incubator.vector</code>; otherwise the classes cannot be
+ * linked and {@link Kernels#get()} falls back to the scalar kernels. To use it, put this module on the classpath next to
+ * soundSynth, it is registered as a service.
+ */
+public class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public double correlation( double[] x, double[] y, int n ) {
+        final int bound = SPECIES.loopBound( n );
+
+        DoubleVector xSum = DoubleVector.zero( SPECIES );
+        DoubleVector ySum = DoubleVector.zero( SPECIES );
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            xSum = xSum.add( DoubleVector.fromArray( SPECIES, x, i ) );
+            ySum = ySum.add( DoubleVector.fromArray( SPECIES, y, i ) );
+        }
+        double xMean = xSum.reduceLanes( VectorOperators.ADD );
+        double yMean = ySum.reduceLanes( VectorOperators.ADD );
+        for (; i < n; i++) {
+            xMean += x[i];
+            yMean += y[i];
+        }
+        xMean /= n;
+        yMean /= n;
+
+        DoubleVector sxxV = DoubleVector.zero( SPECIES );
+        DoubleVector syyV = DoubleVector.zero( SPECIES );
+        DoubleVector sxyV = DoubleVector.zero( SPECIES );
+        for (i = 0; i < bound; i += SPECIES.length()) {
+            final DoubleVector dx = DoubleVector.fromArray( SPECIES, x, i ).sub( xMean );
+            final DoubleVector dy = DoubleVector.fromArray( SPECIES, y, i ).sub( yMean );
+            sxxV = sxxV.add( dx.mul( dx ) );
+            syyV = syyV.add( dy.mul( dy ) );
+            sxyV = sxyV.add( dx.mul( dy ) );
+        }
+        double sxx = sxxV.reduceLanes( VectorOperators.ADD );
+        double syy = syyV.reduceLanes( VectorOperators.ADD );
+        double sxy = sxyV.reduceLanes( VectorOperators.ADD );
+        for (; i < n; i++) {
+            final double dx = x[i] - xMean;
+            final double dy = y[i] - yMean;
+            sxx += dx * dx;
+            syy += dy * dy;
+            sxy += dx * dy;
+        }
+        if (sxx == 0 || syy == 0) {
+            return Double.NaN;
+        }
+        return Math.max( -1, Math.min( 1, sxy / Math.sqrt( sxx * syy ) ) );
+    }
+
+    @Override
+    public String getName() {
+        return "vector(" + SPECIES.length() + "x64)";
+    }
+
+    @Override
+    public void harmonic( double gain, double[] twoCos, double[] previous, double[] current, double[] out, int offset, int n ) {
+        final int bound = SPECIES.loopBound( n );
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final DoubleVector c = DoubleVector.fromArray( SPECIES, current, i );
+            final DoubleVector p = DoubleVector.fromArray( SPECIES, previous, i );
+            final DoubleVector t = DoubleVector.fromArray( SPECIES, twoCos, i );
+            DoubleVector.fromArray( SPECIES, out, offset + i ).add( c.mul( gain ) ).intoArray( out, offset + i );
+            t.mul( c ).sub( p ).intoArray( current, i );
+            c.intoArray( previous, i );
+        }
+        for (; i < n; i++) {
+            out[offset + i] += gain * current[i];
+            final double next = twoCos[i] * current[i] - previous[i];
+            previous[i] = current[i];
+            current[i] = next;
+        }
+    }
+
+    /**
+     * Single lane vectors are not faster than scalar code
+     */
+    @Override
+    public boolean isSupported() {
+        return SPECIES.length() > 1;
+    }
+
+    @Override
+    public void multiply( double[] a, int aOffset, double[] b, int bOffset, int n ) {
+        final int bound = SPECIES.loopBound( n );
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray( SPECIES, a, aOffset + i ).mul( DoubleVector.fromArray( SPECIES, b, bOffset + i ) ).intoArray( a, aOffset + i );
+        }
+        for (; i < n; i++) {
+            a[aOffset + i] *= b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply( float[] a, int aOffset, float[] b, int bOffset, int n ) {
+        final int bound = FLOAT_SPECIES.loopBound( n );
+        int i = 0;
+        for (; i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector.fromArray( FLOAT_SPECIES, a, aOffset + i ).mul( FloatVector.fromArray( FLOAT_SPECIES, b, bOffset + i ) ).intoArray( a, aOffset + i );
+        }
+        for (; i < n; i++) {
+            a[aOffset + i] *= b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiplyAdd( double[] a, double[] b, double[] out, int offset, int n ) {
+        final int bound = SPECIES.loopBound( n );
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final DoubleVector product = DoubleVector.fromArray( SPECIES, a, i ).mul( DoubleVector.fromArray( SPECIES, b, i ) );
+            DoubleVector.fromArray( SPECIES, out, offset + i ).add( product ).intoArray( out, offset + i );
+        }
+        for (; i < n; i++) {
+            out[offset + i] += a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void multiplyAdd( float[] a, float[] b, float[] out, int offset, int n ) {
+        final int bound = FLOAT_SPECIES.loopBound( n );
+        int i = 0;
+        for (; i < bound; i += FLOAT_SPECIES.length()) {
+            final FloatVector product = FloatVector.fromArray( FLOAT_SPECIES, a, i ).mul( FloatVector.fromArray( FLOAT_SPECIES, b, i ) );
+            FloatVector.fromArray( FLOAT_SPECIES, out, offset + i ).add( product ).intoArray( out, offset + i );
+        }
+        for (; i < n; i++) {
+            out[offset + i] += a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void scale( double[] a, int from, int to, double factor ) {
+        final int bound = from + SPECIES.loopBound( Math.max( 0, to - from ) );
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray( SPECIES, a, i ).mul( factor ).intoArray( a, i );
+        }
+        for (; i < to; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public void scale( float[] a, int from, int to, float factor ) {
+        final int bound = from + FLOAT_SPECIES.loopBound( Math.max( 0, to - from ) );
+        int i = from;
+        for (; i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector.fromArray( FLOAT_SPECIES, a, i ).mul( factor ).intoArray( a, i );
+        }
+        for (; i < to; i++) {
+            a[i] *= factor;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package se.lu.lucs.sound.vector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.lu.lucs.sound.Kernels;
+import se.lu.lucs.sound.ScalarKernels;
+
+/**
+ * Checks that the element-wise {@link VectorKernels} give exactly the results of the {@link ScalarKernels}, as
+ * {@link Kernels} requires, on lengths that leave a scalar remainder, and that the correlation only differs by rounding.
+ */
+public class VectorKernelsTest {
+    private static final int N = 253;
+
+    private static float[] toFloat( double[] d ) {
+        final float[] f = new float[d.length];
+        for (int i = 0; i < f.length; i++) {
+            f[i] = (float) d[i];
+        }
+        return f;
+    }
+
+    private final Kernels scalar = new ScalarKernels();
+    private final Kernels vector = new VectorKernels();
+    private final Random random = new Random( 7 );
+
+    @Test
+    public void correlation() {
+        final double[] x = random.doubles( N ).toArray();
+        final double[] y = random.doubles( N ).toArray();
+        assertEquals( scalar.correlation( x, y, N ), vector.correlation( x, y, N ), 1e-12 );
+    }
+
+    @Test
+    public void elementWise() {
+        final double[] twoCos = random.doubles( N ).map( d -> 2 * Math.cos( 2 * Math.PI * d ) ).toArray();
+        final double[][] s = { random.doubles( N ).toArray(), random.doubles( N ).toArray(), new double[N + 5] };
+        final double[][] v = { s[0].clone(), s[1].clone(), s[2].clone() };
+
+        scalar.harmonic( .5, twoCos, s[0], s[1], s[2], 5, N );
+        vector.harmonic( .5, twoCos, v[0], v[1], v[2], 5, N );
+        scalar.multiply( s[2], 3, s[1], 1, N - 1 );
+        vector.multiply( v[2], 3, v[1], 1, N - 1 );
+        scalar.multiplyAdd( s[0], s[1], s[2], 2, N );
+        vector.multiplyAdd( v[0], v[1], v[2], 2, N );
+        scalar.scale( s[2], 1, N + 3, .7 );
+        vector.scale( v[2], 1, N + 3, .7 );
+        for (int i = 0; i < s.length; i++) {
+            assertArrayEquals( s[i], v[i], 0 );
+        }
+    }
+
+    @Test
+    public void singlePrecision() {
+        final float[][] s = { toFloat( random.doubles( N ).toArray() ), toFloat( random.doubles( N ).toArray() ), new float[N + 5] };
+        final float[][] v = { s[0].clone(), s[1].clone(), s[2].clone() };
+
+        scalar.multiply( s[2], 3, s[1], 1, N - 1 );
+        vector.multiply( v[2], 3, v[1], 1, N - 1 );
+        scalar.multiplyAdd( s[0], s[1], s[2], 2, N );
+        vector.multiplyAdd( v[0], v[1], v[2], 2, N );
+        scalar.scale( s[2], 1, N + 3, .7f );
+        vector.scale( v[2], 1, N + 3, .7f );
+        for (int i = 0; i < s.length; i++) {
+            assertArrayEquals( s[i], v[i], 0 );
+        }
+    }
+}
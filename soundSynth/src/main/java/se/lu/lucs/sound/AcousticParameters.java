@@ -5,6 +5,8 @@ public interface AcousticParameters {
     int MAX_SYLLABLES = 20;
     int DEFAULT_WINDOW_LENGTH = 2048;
     int DEFAULT_OVERLAP = 75;
+    int DEFAULT_MAX_HARMONIC_FREQUENCY = 20000;
+    int DEFAULT_SAMPLE_RATE = 44100;
     int MIN_MEAN_SYLLABLE_LENGTH = 50;
     int MAX_MEAN_SYLLABLE_LENGTH = 5000;
     int MIN_SYLLABLE_PAUSE = 20;
@@ -0,0 +1,173 @@
+package se.lu.lucs.sound;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Renders a planned bout on demand, as 16 bit signed little endian mono PCM. The silence around the bout and the pauses
+ * are never materialised, and every syllable is only rendered when the reader reaches it, so the first bytes are available
+ * after the first syllable is synthesised and memory is bounded by the longest syllable instead of the whole bout.
+ * Syllables are rendered with a {@link SynthesisContext} owned by the stream, so a reading thread that lives longer
+ * than the stream, like a servlet container's, does not keep its buffers.
+ *
+ * Normalisation: the peak of the whole bout is only known once the last syllable is rendered, so the gain is set from
+ * the first syllable, which peaks at full scale if it is the only one and {@link #HEADROOM} below otherwise. Every syllable
+ * is rendered before it is read, so this works as a limiter with a look-ahead of one syllable: a later syllable that would
+ * exceed full scale lowers the gain to fit, and the gain stays there for the rest of the bout. The stream is therefore
+ * the rendered bout times a constant up to the first syllable that needed the limiter, and quieter from there on.
+ */
+public class BoutInputStream extends InputStream {
+    /**
+     * Peak of the first syllable of a bout with more syllables, relative to full scale, about -6 dB
+     */
+    private static final double HEADROOM = .5;
+
+    private static double peak( double[] samples ) {
+        double peak = 0;
+        for (final double d : samples) {
+            peak = Math.max( peak, Math.abs( d ) );
+        }
+        return peak;
+    }
+
+    private final BoutPlan plan;
+    private final SynthesisContext ctx;
+
+    /**
+     * Segments alternate: silence, syllable 0, pause 0, syllable 1, ..., last syllable, silence
+     */
+    private int segment = -1;
+    private int segmentLength;
+    private int position;
+
+    /**
+     * The samples of the current segment, null for silence
+     */
+    private double[] samples;
+
+    /**
+     * Factor from samples to 16 bit values, negative until the first syllable is rendered
+     */
+    private double scale = -1;
+
+    /**
+     * The high byte of a sample whose low byte was the last one returned, or -1
+     */
+    private int pendingByte = -1;
+
+    private final byte[] single = new byte[1];
+
+    public BoutInputStream( BoutPlan plan ) {
+        this( plan, new SynthesisContext() );
+    }
+
+    /**
+     * @param plan
+     * @param ctx the context to render the syllables with, must not be used by another thread while the stream is read
+     */
+    public BoutInputStream( BoutPlan plan, SynthesisContext ctx ) {
+        this.plan = plan;
+        this.ctx = ctx;
+    }
+
+    /**
+     * Sets the gain from the first syllable, or lowers it so that a later one does not clip, see the class comment
+     */
+    private void limit( double[] syllable ) {
+        final double peak = peak( syllable );
+        if (peak == 0) {
+            return;
+        }
+        if (scale < 0) {
+            scale = Short.MAX_VALUE / peak * (plan.getSyllables().size() > 1 ? HEADROOM : 1);
+        }
+        else {
+            scale = Math.min( scale, Short.MAX_VALUE / peak );
+        }
+    }
+
+    /**
+     * Moves to the next segment, rendering it if it is a syllable
+     *
+     * @return false at the end of the bout
+     */
+    private boolean nextSegment() {
+        segment++;
+        position = 0;
+        samples = null;
+
+        final int nSyllables = plan.getSyllables().size();
+        if (segment == 0 || segment == 2 * nSyllables) {
+            segmentLength = Generator.silencePoints( plan.getSampleRate() );
+        }
+        else if (segment < 2 * nSyllables) {
+            final BoutPlan.Syllable s = plan.getSyllables().get( (segment - 1) / 2 );
+            if (segment % 2 == 1) {
+                samples = Generator.renderSyllable( ctx, s );
+                limit( samples );
+                segmentLength = samples.length;
+            }
+            else {
+                segmentLength = s.getPause();
+            }
+        }
+        else {
+            segment = 2 * nSyllables + 1;
+            segmentLength = 0;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() {
+        return read( single, 0, 1 ) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) {
+        if (len == 0) {
+            return 0;
+        }
+
+        int written = 0;
+        if (pendingByte >= 0) {
+            b[off + written++] = (byte) pendingByte;
+            pendingByte = -1;
+        }
+
+        while (written < len) {
+            if (position >= segmentLength) {
+                if (!nextSegment()) {
+                    break;
+                }
+                continue;
+            }
+
+            if (samples == null) {
+                // silence: all bytes are zero
+                final int n = (int) Math.min( 2L * (segmentLength - position), len - written );
+                Arrays.fill( b, off + written, off + written + n, (byte) 0 );
+                written += n;
+                position += n / 2;
+                if (n % 2 == 1) {
+                    position++;
+                    pendingByte = 0;
+                }
+                continue;
+            }
+
+            // no syllable exceeds full scale, clamped in case rounding puts it a hair beyond
+            final int v = (int) Math.max( Short.MIN_VALUE, Math.min( Short.MAX_VALUE, samples[position++] * scale ) );
+            b[off + written++] = (byte) v;
+            if (written < len) {
+                b[off + written++] = (byte) (v >> 8);
+            }
+            else {
+                pendingByte = v >> 8 & 0xFF;
+            }
+        }
+
+        return written == 0 ? -1 : written;
+    }
+}
@@ -0,0 +1,25 @@
+package se.lu.lucs.sound;
+
+/**
+ * Receives the bouts of a batch as soon as they are rendered, see {@link Generator#renderBouts(java.util.List, BoutListener)}.
+ * Bouts are delivered in no particular order and on the threads of the render executor, so implementations must be thread safe
+ */
+@FunctionalInterface
+public interface BoutListener {
+    /**
+     * Called instead of {@link #rendered(int, double[])} if a bout could not be rendered. By default the exception is
+     * rethrown, which fails the whole batch once all other bouts are done
+     *
+     * @param index the position of the bout in the batch
+     * @param e
+     */
+    default void failed( int index, RuntimeException e ) {
+        throw e;
+    }
+
+    /**
+     * @param index the position of the bout in the batch
+     * @param samples the complete bout, including the leading and trailing silence
+     */
+    void rendered( int index, double[] samples );
+}
@@ -9,6 +9,22 @@ public class BoutParameters implements AcousticParameters, Serializable {
         AFTER, BEFORE, DURING
     }
 
+    /**
+     * How the harmonic part of a syllable is synthesised. ADDITIVE sums every harmonic per sample, WAVETABLE reads
+     * a precomputed, mip-mapped glottal cycle and is much faster for low voices
+     */
+    public enum SynthesisEngine {
+        ADDITIVE, WAVETABLE
+    }
+
+    /**
+     * How the spectral envelope is applied. STFT multiplies the spectrum of overlapping frames with it, RESONATOR runs
+     * the signal through a {@link ResonatorBank} fitted to it, which is several times cheaper for short syllables
+     */
+    public enum FilterEngine {
+        STFT, RESONATOR
+    }
+
     public static class Formant {
 
         public static final int MIN_F1_FREQ = 200;
@@ -135,8 +151,39 @@ public class BoutParameters implements AcousticParameters, Serializable {
     public double breathingStrength_diff = 0;
     public int breathing_dur = 100;
     public Set<BreathingType> breathingType = null;
+    /**
+     * If true, the breathing is synthesised directly in the frequency domain as random spectra shaped by the spectral
+     * envelope, instead of filtering white noise with the STFT. It has the same spectrum and level but is a different
+     * realisation, and it costs a fraction of the filtering. Only applies to the {@link FilterEngine#STFT}
+     */
+    public boolean spectralBreathing = false;
     public int overlap = DEFAULT_OVERLAP;
     public int windowLength_points = DEFAULT_WINDOW_LENGTH;
+    /**
+     * Upper frequency limit (Hz) for the synthesised harmonics, never above the Nyquist frequency
+     */
+    public int maxHarmonicFrequency = DEFAULT_MAX_HARMONIC_FREQUENCY;
+    /**
+     * If true, harmonics are dropped wherever the instantaneous pitch puts them above maxHarmonicFrequency or the Nyquist frequency,
+     * instead of using one harmonic count for the whole syllable
+     */
+    public boolean bandLimited = false;
+    public SynthesisEngine synthesisEngine = SynthesisEngine.ADDITIVE;
+    public FilterEngine filterEngine = FilterEngine.STFT;
+    /**
+     * If not null, the bout is rendered from a random stream with this seed, so rendering the same parameters always gives the same sound
+     */
+    public Long seed = null;
+    /**
+     * Samples per second of the rendered bout. All durations and frequencies are converted with it, so a bout rendered
+     * at a lower rate sounds the same up to its Nyquist frequency, with proportionally fewer samples
+     */
+    public int sampleRate = DEFAULT_SAMPLE_RATE;
+    /**
+     * If true, the STFT filtering of the voiced part and of the breathing is computed in single precision. The
+     * deviation from a double precision render stays far below the resolution of 16 bit PCM
+     */
+    public boolean singlePrecision = false;
 
     public BoutParameters() {
 
@@ -177,8 +224,16 @@ public class BoutParameters implements AcousticParameters, Serializable {
         breathingStrength_diff = other.breathingStrength_diff;
         breathing_dur = other.breathing_dur;
         breathingType = other.breathingType != null ? new HashSet( other.breathingType ) : null;
+        spectralBreathing = other.spectralBreathing;
         overlap = other.overlap;
         windowLength_points = other.windowLength_points;
+        maxHarmonicFrequency = other.maxHarmonicFrequency;
+        bandLimited = other.bandLimited;
+        synthesisEngine = other.synthesisEngine;
+        filterEngine = other.filterEngine;
+        seed = other.seed;
+        sampleRate = other.sampleRate;
+        singlePrecision = other.singlePrecision;
     }
 
     @Override
@@ -253,10 +308,26 @@ public class BoutParameters implements AcousticParameters, Serializable {
         builder.append( breathing_dur );
         builder.append( "\n\tbreathingType: " );
         builder.append( breathingType );
+        builder.append( "\n\tspectralBreathing: " );
+        builder.append( spectralBreathing );
         builder.append( "\n\toverlap: " );
         builder.append( overlap );
         builder.append( "\n\twindowLength_points: " );
         builder.append( windowLength_points );
+        builder.append( "\n\tmaxHarmonicFrequency: " );
+        builder.append( maxHarmonicFrequency );
+        builder.append( "\n\tbandLimited: " );
+        builder.append( bandLimited );
+        builder.append( "\n\tsynthesisEngine: " );
+        builder.append( synthesisEngine );
+        builder.append( "\n\tfilterEngine: " );
+        builder.append( filterEngine );
+        builder.append( "\n\tseed: " );
+        builder.append( seed );
+        builder.append( "\n\tsampleRate: " );
+        builder.append( sampleRate );
+        builder.append( "\n\tsinglePrecision: " );
+        builder.append( singlePrecision );
         builder.append( "\n}" );
         return builder.toString();
     }
@@ -0,0 +1,71 @@
+package se.lu.lucs.sound;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The syllables of a bout with everything that is drawn at random between them already decided: the parameters of
+ * every syllable (after the adjustments for creaky or breathy voice), the seed every syllable is synthesised from, and
+ * the pauses. Rendering a syllable of a plan is deterministic and independent of the other syllables, so a plan can be
+ * rendered lazily, out of order or in parallel. Use {@link Generator#planBout(BoutParameters, RandomStream)} to create one.
+ */
+public class BoutPlan {
+    public static class Syllable {
+        private final BoutParameters parameters;
+        private final long seed;
+        private final int pause;
+
+        Syllable( BoutParameters parameters, long seed, int pause ) {
+            this.parameters = parameters;
+            this.seed = seed;
+            this.pause = pause;
+        }
+
+        /**
+         * @return the parameters this syllable is rendered with. Must not be modified
+         */
+        public BoutParameters getParameters() {
+            return parameters;
+        }
+
+        /**
+         * @return the number of silent samples following this syllable
+         */
+        public int getPause() {
+            return pause;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+    }
+
+    private final List<Syllable> syllables;
+    private final int sampleRate;
+
+    BoutPlan( List<Syllable> syllables, int sampleRate ) {
+        this.syllables = Collections.unmodifiableList( new ArrayList<>( syllables ) );
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public List<Syllable> getSyllables() {
+        return syllables;
+    }
+
+    /**
+     * Predicts the number of samples of the rendered bout from the planned syllable durations and pauses, without
+     * rendering anything. The actual length differs by the few samples the pitch contour and the STFT add per syllable
+     */
+    public long predictLength() {
+        long length = 2 * Generator.silencePoints( sampleRate );
+        for (final Syllable s : syllables) {
+            length += (long) Math.ceil( s.getParameters().syllableDuration_mean * (sampleRate / 1000.0) ) + s.getPause();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,155 @@
+package se.lu.lucs.sound;
+
+/**
+ * An in-place radix-2 fast fourier transform on split real/imaginary arrays, in double or single precision.
+ * All twiddle factors and the bit reversal permutation are computed once when the plan is created,
+ * so transforming does not allocate.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class Fft {
+    private final int length;
+    private final double[] cos;
+    private final double[] sin;
+    private final float[] cosF;
+    private final float[] sinF;
+    private final int[] bitReverse;
+
+    /**
+     * @param length the transform length, must be a power of two
+     */
+    public Fft( int length ) {
+        if (length < 1 || Integer.bitCount( length ) != 1) {
+            throw new IllegalArgumentException( "transform length must be a power of two, not " + length );
+        }
+        this.length = length;
+
+        cos = new double[length / 2];
+        sin = new double[length / 2];
+        for (int i = 0; i < cos.length; i++) {
+            final double phi = 2 * Math.PI * i / length;
+            cos[i] = Math.cos( phi );
+            sin[i] = Math.sin( phi );
+        }
+        cosF = new float[cos.length];
+        sinF = new float[sin.length];
+        for (int i = 0; i < cos.length; i++) {
+            cosF[i] = (float) cos[i];
+            sinF[i] = (float) sin[i];
+        }
+
+        bitReverse = new int[length];
+        final int bits = Integer.numberOfTrailingZeros( length );
+        for (int i = 0; i < length; i++) {
+            bitReverse[i] = bits == 0 ? 0 : Integer.reverse( i ) >>> 32 - bits;
+        }
+    }
+
+    /**
+     * Forward transform, exp(-2 pi i j k / n), without normalisation
+     */
+    public void forward( double[] re, double[] im ) {
+        transform( re, im, -1 );
+    }
+
+    /**
+     * Forward transform in single precision
+     */
+    public void forward( float[] re, float[] im ) {
+        transform( re, im, -1 );
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Inverse transform, exp(2 pi i j k / n), normalised by 1 / n
+     */
+    public void inverse( double[] re, double[] im ) {
+        transform( re, im, 1 );
+
+        final double scale = 1.0 / length;
+        for (int i = 0; i < length; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+    /**
+     * Inverse transform in single precision, normalised by 1 / n
+     */
+    public void inverse( float[] re, float[] im ) {
+        transform( re, im, 1 );
+
+        final float scale = 1.0f / length;
+        for (int i = 0; i < length; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+    private void transform( double[] re, double[] im, int sign ) {
+        for (int i = 0; i < length; i++) {
+            final int j = bitReverse[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int size = 2; size <= length; size <<= 1) {
+            final int halfSize = size >>> 1;
+            final int step = length / size;
+            for (int k = 0; k < halfSize; k++) {
+                final double wr = cos[k * step];
+                final double wi = sign * sin[k * step];
+                for (int a = k; a < length; a += size) {
+                    final int b = a + halfSize;
+                    final double tr = re[b] * wr - im[b] * wi;
+                    final double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    private void transform( float[] re, float[] im, int sign ) {
+        for (int i = 0; i < length; i++) {
+            final int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int size = 2; size <= length; size <<= 1) {
+            final int halfSize = size >>> 1;
+            final int step = length / size;
+            for (int k = 0; k < halfSize; k++) {
+                final float wr = cosF[k * step];
+                final float wi = sign * sinF[k * step];
+                for (int a = k; a < length; a += size) {
+                    final int b = a + halfSize;
+                    final float tr = re[b] * wr - im[b] * wi;
+                    final float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -3,14 +3,15 @@ package se.lu.lucs.sound;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -19,234 +20,566 @@ import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.SourceDataLine;
 
 import org.apache.commons.math3.analysis.interpolation.LoessInterpolator;
-import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
 import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.distribution.GammaDistribution;
-import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 
 import se.lu.lucs.sound.BoutParameters.BreathingType;
+import se.lu.lucs.sound.BoutParameters.FilterEngine;
 import se.lu.lucs.sound.BoutParameters.Formant;
+import se.lu.lucs.sound.BoutParameters.SynthesisEngine;
+import se.lu.lucs.sound.SynthesisContext.Scratch;
+import se.lu.lucs.sound.SynthesisProfile.Stage;
 
 public class Generator {
-    private final static FastFourierTransformer TRANSFORMER = new FastFourierTransformer( DftNormalization.STANDARD );
+    /**
+     * Identifies a downsampled formant envelope, see {@link Generator#getFormantEnvelope(RandomStream, Formant, boolean, boolean, int, int)}
+     */
+    private static final class FormantEnvelopeKey {
+        private final double[] freq;
+        private final double[] amp;
+        private final double[] bandwidth;
+        private final int len;
+        private final int sampleRate;
+
+        FormantEnvelopeKey( double[] freq, double[] amp, double[] bandwidth, int len, int sampleRate ) {
+            this.freq = freq;
+            this.amp = amp;
+            this.bandwidth = bandwidth;
+            this.len = len;
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FormantEnvelopeKey)) {
+                return false;
+            }
+            final FormantEnvelopeKey other = (FormantEnvelopeKey) obj;
+            return len == other.len && sampleRate == other.sampleRate && Arrays.equals( freq, other.freq ) && Arrays.equals( amp, other.amp ) && Arrays.equals( bandwidth, other.bandwidth );
+        }
 
-    private static final List<Double> SILENCE_TIME;
+        @Override
+        public int hashCode() {
+            int result = len;
+            result = 31 * result + sampleRate;
+            result = 31 * result + Arrays.hashCode( freq );
+            result = 31 * result + Arrays.hashCode( amp );
+            result = 31 * result + Arrays.hashCode( bandwidth );
+            return result;
+        }
+    }
 
-    static {
-        SILENCE_TIME = new ArrayList();
-        final int silencetime = (int) (44100 * .25);
-        for (int i = 0; i < silencetime; i++) {
-            SILENCE_TIME.add( 0.0 );
+    /**
+     * Identifies a pitch contour, see {@link Generator#getPitchContourSamples(int, int, int, int, int, boolean, int)}
+     */
+    private static final class PitchContourKey {
+        private final int duration_ms;
+        private final int pitch_start;
+        private final int pitch_anchor;
+        private final int pitch_end;
+        private final int pitch_anchor_location;
+        private final boolean female;
+        private final int sampleRate;
+
+        PitchContourKey( int duration_ms, int pitch_start, int pitch_anchor, int pitch_end, int pitch_anchor_location, boolean female, int sampleRate ) {
+            this.duration_ms = duration_ms;
+            this.pitch_start = pitch_start;
+            this.pitch_anchor = pitch_anchor;
+            this.pitch_end = pitch_end;
+            this.pitch_anchor_location = pitch_anchor_location;
+            this.female = female;
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PitchContourKey)) {
+                return false;
+            }
+            final PitchContourKey other = (PitchContourKey) obj;
+            return duration_ms == other.duration_ms && pitch_start == other.pitch_start && pitch_anchor == other.pitch_anchor && pitch_end == other.pitch_end
+                            && pitch_anchor_location == other.pitch_anchor_location && female == other.female && sampleRate == other.sampleRate;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = duration_ms;
+            result = 31 * result + pitch_start;
+            result = 31 * result + pitch_anchor;
+            result = 31 * result + pitch_end;
+            result = 31 * result + pitch_anchor_location;
+            result = 31 * result + (female ? 1 : 0);
+            result = 31 * result + sampleRate;
+            return result;
         }
     }
 
-    private final static Random RANDOM = new Random();
+    /**
+     * Identifies the deterministic part of a spectral envelope, the slope and the megaFormant, see
+     * {@link Generator#computeSpectralBase(SpectralBaseKey)}
+     */
+    private static final class SpectralBaseKey {
+        private final double spectralSlope;
+        private final int megaFormant_mean;
+        private final int megaFormant_sd;
+        private final int megaFormant_strength;
+        private final int windowLength;
+        private final int sampleRate;
+
+        SpectralBaseKey( double spectralSlope, int megaFormant_mean, int megaFormant_sd, int megaFormant_strength, int windowLength, int sampleRate ) {
+            this.spectralSlope = spectralSlope;
+            this.megaFormant_mean = megaFormant_mean;
+            this.megaFormant_sd = megaFormant_sd;
+            this.megaFormant_strength = megaFormant_strength;
+            this.windowLength = windowLength;
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SpectralBaseKey)) {
+                return false;
+            }
+            final SpectralBaseKey other = (SpectralBaseKey) obj;
+            return Double.compare( spectralSlope, other.spectralSlope ) == 0 && megaFormant_mean == other.megaFormant_mean && megaFormant_sd == other.megaFormant_sd
+                            && megaFormant_strength == other.megaFormant_strength && windowLength == other.windowLength && sampleRate == other.sampleRate;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Double.hashCode( spectralSlope );
+            result = 31 * result + megaFormant_mean;
+            result = 31 * result + megaFormant_sd;
+            result = 31 * result + megaFormant_strength;
+            result = 31 * result + windowLength;
+            result = 31 * result + sampleRate;
+            return result;
+        }
+    }
 
     /**
-     * ADDS shimmer, ie random variation in amplitude per glottal cycle, to an ALREADY SYNTHESIZED sound
-     * @param ampl a vector of zero-centered numbers
-     * @param pitch
-     * @param shimmerDep the desired amount of shimmer, in % of amplitude range
-     * @param gc
+     * A fixed-size, writable {@link List} view of a sample buffer. Values are only boxed when they are accessed,
+     * so handing a rendered bout to a caller of the old List-based API does not copy it.
      */
-    private static void addShimmer( double[] ampl, List<Double> pitch, int shimmerDep, List<Integer> glottalCycles ) {
+    private static class SampleList extends AbstractList<Double> implements RandomAccess {
+        private final double[] samples;
 
-        // get indices of glottal cycles, if not already provided
-        if (glottalCycles == null) {
-            throw new IllegalArgumentException( "glottalCycles must be provided" );
+        SampleList( double[] samples ) {
+            this.samples = samples;
         }
 
-        final int nInt = glottalCycles.size() - 1; // these are the intervals whose amplitude is to be adjusted at random
-        if (nInt < 2) {
-            return;
-        } // need at least 2 glottal cycles to add shimmer
+        @Override
+        public Double get( int index ) {
+            return samples[index];
+        }
 
-        // generate shimmer as normally final distributed variation in final amplitude with sd=shimmerDep/100
-        final NormalDistribution rnorm = new NormalDistribution( 1, shimmerDep / 100.0 );
-        final double[] shimmer = new double[nInt];
+        @Override
+        public Double set( int index, Double element ) {
+            final double old = samples[index];
+            samples[index] = element;
+            return old;
+        }
 
-        for (int i = 0; i < nInt; i++) {
-            shimmer[i] = rnorm.sample();
-            shimmer[i] = Math.max( shimmer[i], 0 );
+        @Override
+        public int size() {
+            return samples.length;
         }
+    }
 
-        // add shimmer to original ampl
-        for (int z = 0; z < nInt - 1; z++) {
-            for (int i = glottalCycles.get( z ); i < glottalCycles.get( z + 1 ); i++) {
-                ampl[i] *= shimmer[z];
-            }
+    /**
+     * Length of the silence added before and after every bout
+     */
+    private static final double SILENCE_MS = 250;
+
+    /**
+     * Overlap of the cross-fades between breathing and the voiced part
+     */
+    private static final double CROSSFADE_MS = 2;
+
+    /**
+     * How far zero crossings are searched for a cross-fade, in periods of the lowest pitch
+     */
+    private static final int ZERO_CROSSING_SEARCH_PERIODS = 2;
+
+    /**
+     * Downsampled formant envelopes for fixed (not random) vowels
+     */
+    private final static LruCache<FormantEnvelopeKey, double[]> FORMANT_ENVELOPES = new LruCache<>( 64 );
+
+    /**
+     * Pitch contours of recently rendered syllable shapes
+     */
+    private final static LruCache<PitchContourKey, double[]> PITCH_CONTOURS = new LruCache<>( 32 );
+
+    /**
+     * Slope plus megaFormant of spectral envelopes, in dB
+     */
+    private final static LruCache<SpectralBaseKey, double[]> SPECTRAL_BASES = new LruCache<>( 32 );
+
+    /**
+     * Distance weights of the Loess fit of the spectral noise per number of points, see {@link #computeLoessWeights(int)}
+     */
+    private final static LruCache<Integer, double[]> LOESS_WEIGHTS = new LruCache<>( 8 );
+
+    /**
+     * Share of the points in each local regression of the Loess fit of the spectral noise, and number of robustness
+     * iterations, as in the original generator
+     */
+    private static final double LOESS_BANDWIDTH = .75;
+    private static final int LOESS_ROBUSTNESS_ITERATIONS = 4;
+    private static final double LOESS_ACCURACY = 1e-12;
+
+    /**
+     * Converts dB on the scale of the spectral envelope, 2^(dB / 10), to a natural exponent
+     */
+    private static final double LOG_FILTER_TO_EXP = Math.log( 2 ) / 10;
+
+    /**
+     * Renders the syllables of a bout and the bouts of a batch concurrently, or null to render them on the calling thread
+     */
+    private static volatile Executor renderExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Readjusts the major timbre parameters according to the creaky or breathy voice. As in the original generator the
+     * adjustment is applied again for every syllable of a bout
+     */
+    private static void adjustTimbre( BoutParameters p ) {
+        // readjust major timber pars according to the given breathingStrength
+        if (p.creakyBreathy < 0) { // for creaky voice, adjust:
+            p.jitterDep -= p.creakyBreathy;
+            p.shimmerDep -= p.creakyBreathy * 2;
+            // driftDep = driftDep - breathingStrength*6
         }
+        // for both creaky and breathy voices, adjust:
+        p.spectralSlope += p.creakyBreathy * .3;
+        p.megaFormant_strength += Math.abs( p.creakyBreathy ) * 60;
+        p.formantStrength = (int) Math.max( 0, p.formantStrength - Math.abs( p.creakyBreathy ) * p.formantStrength / 4.0 );
+        p.rolloff = (int) Math.max( 0, p.rolloff + p.creakyBreathy * 40 );
     }
 
     /**
-     * vocal fry, ie dampens or mutes a % of glottal cycles in an ALREADY SYNTHESIZED sound to create false subharmonics.
+     * ADDS shimmer, ie random variation in amplitude per glottal cycle, and vocal fry, ie dampens or mutes a % of glottal
+     * cycles to create false subharmonics, to an ALREADY SYNTHESIZED sound. The gain of every cycle is computed once and
+     * applied in a single pass
      *
      * @param ampl a vector of zero-centered amplitudes
-     * @param pitch
+     * @param glottalCycles borders of the glottal cycles, see {@link #getGlottalCycles(double[], int)}
+     * @param shimmerDep the desired amount of shimmer, in % of amplitude range
      * @param nSubharm
      * @param subharmDep controls the amplitude of subharmonics (in %) relative to F0
-     * @param gc
      */
-    private static void addVocalFry( double[] ampl, List<Double> pitch, int nSubharm, int subharmDep, List<Integer> glottalCycles ) {
-        if (glottalCycles == null) {
-            throw new IllegalArgumentException( "glottalCycles must be provided" );
+    private static void applyCycleGains( RandomStream random, double[] ampl, int[] glottalCycles, int shimmerDep, int nSubharm, int subharmDep ) {
+        final int nInt = glottalCycles.length - 1; // these are the intervals whose amplitude is to be adjusted
+        if (nInt < 2) {
+            return;
+        } // need at least 2 glottal cycles to add shimmer or vocal fry
+
+        // generate shimmer as normally distributed variation in amplitude with sd=shimmerDep/100. The last cycle keeps its amplitude
+        final double[] shimmer;
+        if (shimmerDep > 0) {
+            shimmer = new double[nInt];
+            Sampler.fillGaussian( random, shimmer, 0, nInt, 1, shimmerDep / 100.0 );
+        }
+        else {
+            shimmer = null;
         }
 
-        final double prop_preserved_cycles = 1 / (double) (1 + nSubharm);
+        // dampen all but 1 out of every /dampenEveryNthCycle/ glottal cycles, if <50% of the cycles are to be preserved
+        final int dampenEveryNthCycle = nSubharm + 1;
+        final boolean fry = subharmDep > 0 && 1 / (double) dampenEveryNthCycle <= .5;
         final double dampening = subharmDep / 100.0;
-        final int dampenEveryNthCycle = nSubharm + 1; // dampen 1 out of every /dampenEveryNthCycle/ glottal cycles (eg 4 out of 5 if prop_preserved_cycles=20%)
-
-        final int nInt = glottalCycles.size() - 1; // these are the intervals whose amplitude is to be adjusted at random
-        if (nInt < 2 || prop_preserved_cycles > .5) {
-            return;
-        } // need at least 2 glottal cycles and <50% of preserved glottal cycles to add vocal fry
 
+        final Kernels kernels = Kernels.get();
         for (int i = 0; i < nInt; i++) {
-            if (i % dampenEveryNthCycle != 1) {
-                for (int j = glottalCycles.get( i ); j < glottalCycles.get( i + 1 ); j++) {
-                    ampl[j] *= 1 - dampening;
-                }
+            double gain = 1;
+            if (shimmer != null && i < nInt - 1) {
+                gain = Math.max( shimmer[i], 0 );
+            }
+            if (fry && i % dampenEveryNthCycle != 1) {
+                gain *= 1 - dampening;
+            }
+            if (gain != 1) {
+                kernels.scale( ampl, glottalCycles[i], glottalCycles[i + 1], gain );
             }
         }
-
     }
 
-    private static List<Double> applyFFT( double[] ampl, BoutParameters p, double[] filter ) {
-        final double delta = p.windowLength_points - p.overlap * p.windowLength_points / 100.0;
+    static double[] applyFFT( SynthesisContext ctx, double[] ampl, int length, BoutParameters p, double[] filter ) {
+        final StftEngine engine = ctx.getStftEngine( p.windowLength_points, p.overlap );
+        final double[] out = new double[engine.getOutputLength( length )];
+        if (p.filterEngine == FilterEngine.RESONATOR) {
+            // same length and level as the STFT, so both engines are interchangeable
+            ctx.getResonatorBank( filter, p.windowLength_points, p.sampleRate ).process( ampl, out.length, out, engine.getPassbandGain() );
+            return out;
+        }
+        if (!p.singlePrecision) {
+            engine.filter( ampl, length, filter, out );
+            return out;
+        }
 
-        final double max = ampl.length - p.windowLength_points;
-        final int colNum = (int) ((max - 1) / delta);
+        final float[] in = ctx.getFloatScratch( Scratch.SINGLE_INPUT, length );
+        for (int i = 0; i < length; i++) {
+            in[i] = (float) ampl[i];
+        }
+        final float[] filterF = ctx.getFloatScratch( Scratch.SINGLE_FILTER, filter.length );
+        for (int i = 0; i < filter.length; i++) {
+            filterF[i] = (float) filter[i];
+        }
+        final float[] outF = ctx.getFloatScratch( Scratch.SINGLE_OUTPUT, out.length );
+        engine.filter( in, length, filterF, outF );
+        for (int i = 0; i < out.length; i++) {
+            out[i] = outF[i];
+        }
+        return out;
+    }
 
-        // prepare windowing function
-        final double[] w = generateGaussianWindow( p.windowLength_points );
+    /**
+     * The stream a bout is drawn from: its own if it has a {@link BoutParameters#seed}, otherwise one split off the context's
+     */
+    private static RandomStream boutRandom( BoutParameters p, SynthesisContext ctx ) {
+        return p.seed != null ? new RandomStream( p.seed ) : ctx.getRandom().split();
+    }
 
-        final List<List<Complex>> spectrum = new ArrayList<>();
-        int frameOffset = 0;
-        while (frameOffset < ampl.length - p.windowLength_points) {
+    /**
+     * Computes the formant envelope from 1 Hz to the Nyquist frequency and downsamples it to len points
+     */
+    private static double[] computeFormantEnvelope( double[] formantFreq, double[] formantAmp, double[] formantBandwidth, int len, int sampleRate ) {
+        // since formant frequencies are given in Hz, the filter is taken from 1 Hz to the Nyquist frequency and shortened
+        // to length 'len' by taking every deltaFormat'th point. Only those points are computed
+        final int nyquist = sampleRate / 2;
+        final int deltaFormat = (nyquist - 1) / (len - 1);
+        final double[] ret = new double[len];
+        final double[] formant = new double[len];
 
-            final double[] frame = Arrays.copyOfRange( ampl, frameOffset, frameOffset + p.windowLength_points );
-            final List<Complex> frameSpectrum = fft( frame );
-            spectrum.add( frameSpectrum );
-            frameOffset += delta;
+        for (int f = 0; f < formantFreq.length; f++) {
+            final double mg = formantFreq[f]; // mean of gamma distribution. Could use normal instead, but gamma is pretty handy in this case
+            final double sdg = formantBandwidth[f]; // sd of gamma distribution
+            final double shape = mg * mg / (sdg * sdg);
+            final double scale = 1 / (mg / (sdg * sdg)); //R code had rate, we need scale which is 1/rate
+
+            // the density is unimodal, so its maximum over 1..nyquist Hz lies next to the mode, or at 1 Hz if there is none
+            final double mode = Math.max( 1, Math.min( nyquist, (shape - 1) * scale ) );
+            final double maxFormant = Math.max( Double.MIN_VALUE,
+                            Math.max( Sampler.gammaDensity( Math.floor( mode ), shape, scale ), Sampler.gammaDensity( Math.ceil( mode ), shape, scale ) ) );
+            Sampler.gammaDensity( formant, len, 1, deltaFormat, shape, scale );
+            for (int i = 0; i < len; i++) {
+                ret[i] += formant[i] / maxFormant * formantAmp[f];
+            }
         }
+        return ret;
 
-        // apply filter
-        for (final List<Complex> frameSpec : spectrum) {
-            for (int i = 0; i < frameSpec.size(); i++) {
+    }
 
-                frameSpec.set( i, frameSpec.get( i ).multiply( filter[i] ) );
+    /**
+     * The distance weights of a Loess fit with a bandwidth of {@link #LOESS_BANDWIDTH} over n equally spaced points, as
+     * an n x n matrix: row i holds the tricube weight of every point in the local regression at point i, 0 outside the
+     * window of the nearest points
+     *
+     * @throws IllegalArgumentException if the bandwidth covers less than 2 points
+     */
+    private static double[] computeLoessWeights( int n ) {
+        final int bandwidth = (int) (LOESS_BANDWIDTH * n);
+        if (bandwidth < 2) {
+            throw new IllegalArgumentException( "a Loess fit over " + n + " points covers less than 2 points" );
+        }
+        final double[] weights = new double[n * n];
+        int left = 0;
+        int right = bandwidth - 1;
+        for (int i = 0; i < n; i++) {
+            // the window moves right by at most one point per point, once its right neighbour is closer than its left end
+            if (i > 0 && right + 1 < n && right + 1 - i < i - left) {
+                left++;
+                right++;
+            }
+            final double denom = Math.abs( 1.0 / (i - left > right - i ? left - i : right - i) );
+            for (int k = left; k <= right; k++) {
+                final double x = Math.abs( k - i ) * denom;
+                final double tmp = 1 - x * x * x;
+                weights[i * n + k] = x >= 1 ? 0 : tmp * tmp * tmp;
             }
         }
+        return weights;
+    }
 
-        //Inverse fft to reconstruct time series
-        final int h = p.windowLength_points * (100 - p.overlap) / 100;
+    /**
+     * Computes the pitch of every sample of a syllable: a smooth curve through the start, the anchor and the end pitch
+     * (and a second anchor just before the end if the anchor is early). The anchors are smoothed with a Loess fit, as in
+     * the original generator, and connected by the natural cubic spline through them, which is evaluated in closed form
+     * segment by segment
+     */
+    private static double[] computePitchContour( PitchContourKey k ) {
+        final double pointsPerMs = k.sampleRate / 1000.0;
+        final int time = (int) Math.floor( k.duration_ms * pointsPerMs );
+        final double pitch_anchor_time = k.pitch_anchor_location / 100.0 * k.duration_ms;
+        final double pitch_anchor_time_points = Math.floor( pitch_anchor_time * pointsPerMs );
+
+        double[] x;
+        double[] y;
 
-        final int xlen = p.windowLength_points + (colNum - 1) * h;
-        final List<Double> ret = new ArrayList<>( xlen );
-        for (int i = 0; i < xlen; i++) {
-            ret.add( 0.0 );
+        if (k.pitch_anchor_location < 30) {
+            x = new double[] { 0, pitch_anchor_time_points, time - pitch_anchor_time_points, time };
+            y = new double[] { k.pitch_start, k.pitch_anchor, Math.floor( k.pitch_anchor / 1.1 ), k.pitch_end };
         }
+        else {
+            x = new double[] { 0, pitch_anchor_time_points, time };
+            y = new double[] { k.pitch_start, k.pitch_anchor, k.pitch_end };
+        }
+        y = new LoessInterpolator( .75, 4 ).smooth( x, y );
 
-        for (int b = 0; b <= h * (colNum - 1); b += h) {
+        final int n = x.length - 1;
+        final double[] b = new double[n];
+        final double[] c = new double[n + 1];
+        final double[] d = new double[n];
+        fitNaturalSpline( x, y, b, c, d );
 
-            final List<Complex> frameSpec = spectrum.get( b / h );
-            final List<Complex> mirror = new ArrayList<>( frameSpec );
-            mirror.remove( 0 );
-            Collections.reverse( mirror );
-            for (int i = 0; i < mirror.size(); i++) {
-                final Complex t = mirror.get( i );
-                mirror.set( i, Complex.valueOf( t.getReal(), -t.getImaginary() ) );
+        //let's draw a smooth curve through the given pitch anchors
+        final double[] ret = new double[time];
+        final int factor = k.female ? 2 : 1;
+        double min = Double.POSITIVE_INFINITY;
+        int j = 0;
+        for (int i = 0; i < time; i++) {
+            while (j < n - 1 && i >= x[j + 1]) {
+                j++;
             }
-            final Complex last = Complex.valueOf( frameSpec.get( frameSpec.size() - 1 ).getReal() );
-
-            final List<Complex> something = new ArrayList<>();
-            something.addAll( frameSpec );
-            something.add( last );
-            something.addAll( mirror );
-
-            final Complex[] s = new Complex[something.size()];
-            something.toArray( s );
-            final Complex[] xprim = TRANSFORMER.transform( s, TransformType.INVERSE );
+            final double t = i - x[j];
+            ret[i] = (y[j] + t * (b[j] + t * (c[j] + t * d[j]))) * factor;
+            min = Math.min( min, ret[i] );
+        }
 
-            for (int i = 0; i < p.windowLength_points; i++) {
-                ret.set( i + b, ret.get( i + b ) + xprim[i].getReal() * w[i] );
+        //If the interpolation gave us some negative pitch, we transpose this by Math.abs(minimum)
+        if (min < 0) {
+            final double delta = Math.abs( min );
+            for (int i = 0; i < time; i++) {
+                ret[i] += delta;
             }
         }
 
-        double wSum = 0;
-        for (final double element : w) {
-            wSum += element;
+        return ret;
+    }
+
+    /**
+     * Computes the deterministic part of a spectral envelope in dB: the basic linear decay controlled by spectralSlope plus
+     * the megaFormant, which amplifies high frequencies for constricted, creaky voices. Slope and megaFormant are given
+     * per bin of the default window at the default sample rate, so they are scaled by the bin width to keep their shape in Hz
+     */
+    private static double[] computeSpectralBase( SpectralBaseKey k ) {
+        final int lenFilter = k.windowLength / 2;
+        final double defaultBinWidth = AcousticParameters.DEFAULT_SAMPLE_RATE / (double) AcousticParameters.DEFAULT_WINDOW_LENGTH;
+        final double binScale = k.sampleRate / (double) k.windowLength / defaultBinWidth;
+        final double[] base = new double[lenFilter];
+        for (int i = 0; i < lenFilter; i++) {
+            base[i] = (i + 1) * -k.spectralSlope * binScale;
         }
-        wSum *= wSum;
-        final double s = wSum;
-        ret.replaceAll( d -> d * h / s );
 
-        return ret;
+        if (k.megaFormant_strength != 0) {
+            // the Nyquist frequency in bins of the default window
+            final double nyquist = k.sampleRate / 2.0 / defaultBinWidth;
+            final double[] megaFormant = new double[lenFilter];
+            double maxMegaFormant = Double.MIN_VALUE;
+            for (int i = 0; i < lenFilter; i++) {
+                megaFormant[i] = Sampler.normalDensity( Math.min( i * binScale, nyquist ), k.megaFormant_mean, k.megaFormant_sd );
+                maxMegaFormant = Math.max( maxMegaFormant, megaFormant[i] );
+            }
+            for (int i = 0; i < lenFilter; i++) {
+                base[i] += megaFormant[i] / maxMegaFormant * k.megaFormant_strength;
+            }
+        }
+        return base;
     }
 
-    public static AudioInputStream convertAmplitude( List<Double> curve, AudioFormat format ) {
-        final Double max = curve.stream().collect( Collectors.summarizingDouble( Double::doubleValue ) ).getMax();
-        final ByteBuffer audioBuffer = ByteBuffer.allocate( curve.size() * Short.BYTES );
+    public static AudioInputStream convertAmplitude( double[] curve, AudioFormat format ) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (final double d : curve) {
+            max = Math.max( max, d );
+        }
+        final byte[] audioBytes = new byte[curve.length * Short.BYTES];
         final double pow = 65536;
-        for (final Double d : curve) {
-            final int v = (int) (d.doubleValue() / max * pow);
-            audioBuffer.put( (byte) v );
-            audioBuffer.put( (byte) (v >> 8) );
+        int index = 0;
+        for (final double d : curve) {
+            final int v = (int) (d / max * pow);
+            audioBytes[index++] = (byte) v;
+            audioBytes[index++] = (byte) (v >> 8);
 
         }
 
-        final byte[] audioBytes = audioBuffer.array();
+        return new AudioInputStream( new ByteArrayInputStream( audioBytes ), format, curve.length );
 
-        return new AudioInputStream( new ByteArrayInputStream( audioBytes ), format, curve.size() );
+    }
 
+    public static AudioInputStream convertAmplitude( List<Double> curve, AudioFormat format ) {
+        return convertAmplitude( toArray( curve ), format );
     }
 
     /**
-     * cross-fades two sounds, ie fades out the first sound and fades in the second sound (linearly), with an overlap of length_ms
-     * @return
+     * cross-fades a second sound into the first one in place, ie fades out the first sound and fades in the second sound
+     * (linearly), with an overlap of length_points at zero crossings close to the end of the first and the start of the
+     * second sound. If either sound is shorter than the overlap they are simply concatenated
+     *
+     * @param out holds the first sound in [0, length) and receives the result, must hold at least length + ampl2.length points
+     * @param length length of the first sound
+     * @param ampl2 the second sound
+     * @param length_points length of the overlap
+     * @param maxSearch how far the zero crossings are searched from the end and the start
+     * @return the length of the result
      */
-    private static List<Double> crossFade( List<Double> ampl1, List<Double> ampl2, double length_ms ) {
-        final List<Double> result = new ArrayList<>();
-        final int length_points = (int) Math.floor( length_ms * 44.1 ); // defaults to 88 points
-        if (ampl1.size() < length_points || ampl2.size() < length_points) {
-            result.addAll( ampl1 );
-            result.addAll( ampl2 );
-
-            return result;
+    private static int crossFade( double[] out, int length, double[] ampl2, int length_points, int maxSearch ) {
+        if (length < length_points || ampl2.length < length_points) {
+            System.arraycopy( ampl2, 0, out, length, ampl2.length );
+            return length + ampl2.length;
         }
 
-        final List<Double> ampl1Cross = new ArrayList<>( ampl1.subList( 0, findClosestsZeroCrossing( ampl1, ampl1.size() ) ) ); // up to the last non-negative point on the upward curve + one exta zero
-        final List<Double> ampl2Cross = new ArrayList<>( ampl2.subList( findClosestsZeroCrossing( ampl2, 0 ), ampl2.size() ) ); // from the first positive point on the upward curve
+        final int ampl1End = findClosestsZeroCrossing( out, length, length, maxSearch ); // up to the last non-negative point on the upward curve + one exta zero
+        final int ampl2Start = findClosestsZeroCrossing( ampl2, ampl2.length, 0, maxSearch ); // from the first positive point on the upward curve
+        if (ampl1End < length_points + 1 || ampl2.length - ampl2Start < length_points) {
+            throw new IndexOutOfBoundsException( "zero crossings leave too little room for a cross-fade of " + length_points + " points" );
+        }
 
+        //TODO Might need another round of debugging
+        // the first point of the overlap is taken from before the faded part of the first sound. The overlap is read from
+        // the first sound at or before the point it is written to, so it is filled from the back to read every point
+        // before it is overwritten
+        final int head = length - length_points - 1;
         final double delta = 1 / (double) (length_points - 1);
-        double v = 1;
-        for (int i = ampl1Cross.size() - length_points; i < ampl1Cross.size(); i++) {
-            double a = ampl1Cross.get( i );
-            a *= v;
-            ampl1Cross.set( i, a );
-            v -= delta;
-        }
-        v = 0;
-        for (int i = 0; i < length_points; i++) {
-            double a = ampl2Cross.get( i );
-            a *= v;
-            ampl2Cross.set( i, a );
-            v += delta;
-        }
-        final List<Double> cross = new ArrayList<>();
+        for (int i = length_points - 1; i >= 0; i--) {
+            double a = out[ampl1End - length_points - 1 + i];
+            if (i > 0) {
+                a *= 1 - (i - 1) * delta;
+            }
+            out[head + i] = a + ampl2[ampl2Start + i] * (i * delta);
+        }
 
-        //TODO Might need another round of debugging
-        for (int i = 0; i < length_points; i++) {
-            cross.add( ampl1Cross.get( ampl1Cross.size() - length_points - 1 + i ) + ampl2Cross.get( i ) );
+        System.arraycopy( ampl2, length_points, out, head + length_points, ampl2.length - length_points - 1 );
+        return length + ampl2.length - length_points - 2;
+    }
+
+    /**
+     * Cross-fades the given sounds one after the other, see {@link #crossFade(double[], int, double[], int, int)}
+     *
+     * @param sounds are not modified
+     */
+    private static double[] crossFade( SynthesisContext ctx, int sampleRate, double[]... sounds ) {
+        int capacity = 0;
+        for (final double[] sound : sounds) {
+            capacity += sound.length;
         }
+        final double[] out = ctx.getScratch( Scratch.CROSSFADE, capacity );
+        final int length_points = (int) Math.floor( CROSSFADE_MS * (sampleRate / 1000.0) ); // defaults to 88 points
+        final int maxSearch = ZERO_CROSSING_SEARCH_PERIODS * sampleRate / AcousticParameters.MIN_PITCH;
 
-        result.addAll( ampl1.subList( 0, ampl1.size() - length_points - 1 ) );
-        result.addAll( cross );
-        result.addAll( ampl2.subList( length_points, ampl2.size() - 1 ) );
-        return result;
+        System.arraycopy( sounds[0], 0, out, 0, sounds[0].length );
+        int length = sounds[0].length;
+        for (int i = 1; i < sounds.length; i++) {
+            length = crossFade( out, length, sounds[i], length_points, maxSearch );
+        }
+        return Arrays.copyOf( out, length );
     }
 
     /**
@@ -256,13 +589,13 @@ public class Generator {
      * @param fadeStrength can vary from -inf (fade out) to +inf (fade in); in practice -5 to +5 is enough. 0 means no change of ampl, +1 means weak linear fade-in from 50% to 100%, +5 means fast exponential fade-in from ~0% to 100%, etc.
      * @return
      */
-    private static List<Double> fadeInOutExponential( List<Double> ampl, double fadeStrength ) {
-        final int len = ampl.size();
+    private static double[] fadeInOutExponential( double[] ampl, double fadeStrength ) {
+        final int len = ampl.length;
 
         if (len == 0 || fadeStrength == 0) {
             return ampl;
         }
-        final Double[] mult = new Double[len];
+        final double[] mult = new double[len];
         double maxMult = Double.MIN_VALUE;
         for (int i = 0; i < len; i++) {
             mult[i] = 1.0 / (1.0 + Math.exp( -fadeStrength * i / len ));
@@ -270,19 +603,14 @@ public class Generator {
         }
 
         if (fadeStrength <= 0) {
-            for (int i = 0; i < mult.length; i++) {
-                mult[i] /= maxMult;
+            for (int i = 0; i < len; i++) {
+                ampl[i] *= mult[i] / maxMult;
             }
         }
         else {
-            final List<Double> multList = Arrays.asList( mult );
-            Collections.reverse( multList );
-            final double m = maxMult;
-            multList.replaceAll( d -> (1 - d) / m ); // range 0 to 1
-
-        }
-        for (int i = 0; i < ampl.size(); i++) {
-            ampl.set( i, ampl.get( i ) * mult[i] );
+            for (int i = 0; i < len; i++) {
+                ampl[i] *= (1 - mult[len - 1 - i]) / maxMult; // range 0 to 1
+            }
         }
 
         return ampl;
@@ -297,20 +625,20 @@ public class Generator {
      * @param length_fade
      * @return
      */
-    private static List<Double> fadeInOutLinear( List<Double> ampl, boolean do_fadeIn, boolean do_fadeOut, int length_fade ) {
+    private static double[] fadeInOutLinear( double[] ampl, boolean do_fadeIn, boolean do_fadeOut, int length_fade ) {
         //Clamp the fade to the sound's length. Ignore higher values
-        length_fade = Math.min( length_fade, ampl.size() );
+        length_fade = Math.min( length_fade, ampl.length );
 
         if (do_fadeIn) {
             for (int i = 0; i < length_fade; i++) {
-                ampl.set( i, ampl.get( i ) * (i / (double) length_fade) );
+                ampl[i] *= i / (double) length_fade;
             }
         }
 
         if (do_fadeOut) {
             for (int i = 0; i < length_fade; i++) {
-                final int reverseIndex = i + ampl.size() - length_fade;
-                ampl.set( reverseIndex, ampl.get( reverseIndex ) * (1 - i / (double) length_fade) );
+                final int reverseIndex = i + ampl.length - length_fade;
+                ampl[reverseIndex] *= 1 - i / (double) length_fade;
             }
         }
 
@@ -324,125 +652,144 @@ public class Generator {
      * @return
      */
     public static List<Complex> fft( double[] window ) {
+        final double[] re = new double[window.length / 2];
+        final double[] im = new double[window.length / 2];
+        RealFft.forLength( window.length ).forward( window, 0, re, im );
 
-        final Complex[] c = TRANSFORMER.transform( window, TransformType.FORWARD );
-        return Arrays.asList( c ).subList( 0, c.length / 2 );
+        final Complex[] c = new Complex[re.length];
+        c[0] = Complex.valueOf( re[0] );
+        for (int i = 1; i < c.length; i++) {
+            c[i] = Complex.valueOf( re[i], im[i] );
+        }
+        return Arrays.asList( c );
     }
 
     /**
      * returns the index of the last value before zero crossing with a positive slope
-     * closest to location
+     * closest to location, searching outward from location. Of two crossings at the same distance the earlier one is
+     * returned
      *
+     * @param length number of points of ampl to search
+     * @param maxDistance if no crossing lies within this distance, location is returned, clamped to the valid indices
      * @return
      */
-    private static int findClosestsZeroCrossing( List<Double> ampl, int location ) {
-        final Set<Integer> crossings = new HashSet<>();
-
-        boolean predecessorPositive = ampl.get( 0 ) >= 0;
-        for (int i = 1; i < ampl.size(); i++) {
-            if (ampl.get( i ) > 0 && !predecessorPositive) {
-                crossings.add( i - 1 );
+    private static int findClosestsZeroCrossing( double[] ampl, int length, int location, int maxDistance ) {
+        // a crossing at i requires ampl[i + 1], and ampl[0] only counts as below zero if it is negative
+        final int last = length - 2;
+        for (int d = 0; d <= maxDistance; d++) {
+            final int before = location - d;
+            if (before >= 0 && before <= last && ampl[before + 1] > 0 && (before == 0 ? ampl[0] < 0 : ampl[before] <= 0)) {
+                return before;
+            }
+            final int after = location + d;
+            if (d > 0 && after >= 0 && after <= last && ampl[after + 1] > 0 && (after == 0 ? ampl[0] < 0 : ampl[after] <= 0)) {
+                return after;
             }
-            predecessorPositive = ampl.get( i ) > 0;
         }
-        if (crossings.isEmpty()) {
+        if (last < 0) {
             throw new IllegalStateException( "no crossings in given amplitude" );
         }
-        int loc = -1;
-        int min = Integer.MAX_VALUE;
-        for (final Integer i : crossings) {
-            final int j = Math.abs( location - i );
-            if (j < min) {
-                min = j;
-                loc = i;
-            }
-        }
+        return Math.max( 0, Math.min( last, location ) );
+    }
 
-        return loc;
+    /**
+     * Fits the natural cubic spline through the points (x[j], y[j]), as commons-math's SplineInterpolator does. On segment
+     * j it is y[j] + b[j] t + c[j] t^2 + d[j] t^3, with t the distance from x[j]
+     *
+     * @param b receives x.length - 1 coefficients
+     * @param c receives x.length coefficients
+     * @param d receives x.length - 1 coefficients
+     */
+    private static void fitNaturalSpline( double[] x, double[] y, double[] b, double[] c, double[] d ) {
+        final int n = x.length - 1;
+        final double[] h = new double[n];
+        for (int j = 0; j < n; j++) {
+            h[j] = x[j + 1] - x[j];
+        }
+        final double[] mu = new double[n];
+        final double[] z = new double[n + 1];
+        for (int j = 1; j < n; j++) {
+            final double g = 2 * (x[j + 1] - x[j - 1]) - h[j - 1] * mu[j - 1];
+            mu[j] = h[j] / g;
+            z[j] = (3 * (y[j + 1] * h[j - 1] - y[j] * (x[j + 1] - x[j - 1]) + y[j - 1] * h[j]) / (h[j - 1] * h[j]) - h[j - 1] * z[j - 1]) / g;
+        }
+        c[n] = 0;
+        for (int j = n - 1; j >= 0; j--) {
+            c[j] = z[j] - mu[j] * c[j + 1];
+            b[j] = (y[j + 1] - y[j]) / h[j] - h[j] * (c[j + 1] + 2 * c[j]) / 3;
+            d[j] = (c[j + 1] - c[j]) / (3 * h[j]);
+        }
     }
 
     public static List<Double> generateBout( BoutParameters p ) {
-        final List<Double> sound = new ArrayList<>();
-
-        //Copy the parameters as we might alter them for multiple syllables
-        p = new BoutParameters( p );
-
-        // generate syllables
-        for (int i = 0; i < p.numberOfSyllables; i++) {
-
-            final List<Double> pitchContour = getPitchContour( p.syllableDuration_mean, p.pitch_start, p.pitch_anchor, p.pitch_end, p.pitch_anchor_location,
-                            p.femaleVoice );
-            // generate syllable
-            sound.addAll( generateSyllable( p, pitchContour ) );
-
-            if (i < p.numberOfSyllables - 1) {
-                //If there's at least one more syllable coming, mutate the parameters a bit
-
-                //durationMs
-                double sdg = p.syllableDuration_mean * p.var_bw_syllables / 100.0;
-                GammaDistribution g = new GammaDistribution( p.syllableDuration_mean * p.syllableDuration_mean / (sdg * sdg),
-                                1 / (p.syllableDuration_mean / (sdg * sdg)) );
-
-                p.syllableDuration_mean = Math.max( AcousticParameters.MIN_MEAN_SYLLABLE_LENGTH,
-                                Math.min( AcousticParameters.MAX_MEAN_SYLLABLE_LENGTH, (int) g.sample() ) );
-
-                //pauseMs
-                sdg = p.pauseDuration_mean * p.var_bw_syllables / 100.0;
-                g = new GammaDistribution( p.pauseDuration_mean * p.pauseDuration_mean / (sdg * sdg), 1 / (p.pauseDuration_mean / (sdg * sdg)) );
-
-                p.pauseDuration_mean = Math.max( AcousticParameters.MIN_SYLLABLE_PAUSE, Math.min( AcousticParameters.MAX_SYLLABLE_PAUSE, (int) g.sample() ) );
-
-                //pitchStart
-                sdg = p.pitch_start * p.var_bw_syllables / 100.0;
-                g = new GammaDistribution( p.pitch_start * p.pitch_start / (sdg * sdg), 1 / (p.pitch_start / (sdg * sdg)) );
-
-                p.pitch_start = Math.max( AcousticParameters.MIN_PITCH, Math.min( AcousticParameters.MAX_PITCH, (int) g.sample() ) );
-
-                //pitchAnchor
-                sdg = p.pitch_anchor * p.var_bw_syllables / 100.0;
-                g = new GammaDistribution( p.pitch_anchor * p.pitch_anchor / (sdg * sdg), 1 / (p.pitch_anchor / (sdg * sdg)) );
-
-                p.pitch_anchor = Math.max( AcousticParameters.MIN_PITCH, Math.min( AcousticParameters.MAX_PITCH, (int) g.sample() ) );
-
-                //pitchEnd
-                sdg = p.pitch_end * p.var_bw_syllables / 100.0;
-                g = new GammaDistribution( p.pitch_end * p.pitch_end / (sdg * sdg), 1 / (p.pitch_end / (sdg * sdg)) );
-
-                p.pitch_end = Math.max( AcousticParameters.MIN_PITCH, Math.min( AcousticParameters.MAX_PITCH, (int) g.sample() ) );
+        return toList( generateBoutSamples( p ) );
+    }
 
-                //pitchEnd
-                sdg = p.pitch_anchor_location * p.var_bw_syllables / 100.0;
-                g = new GammaDistribution( p.pitch_anchor_location * p.pitch_anchor_location / (sdg * sdg), 1 / (p.pitch_anchor_location / (sdg * sdg)) );
+    /**
+     * Renders a complete bout, including the leading and trailing silence, into a primitive sample buffer
+     *
+     * @param p
+     * @return
+     */
+    public static double[] generateBoutSamples( BoutParameters p ) {
+        return generateBoutSamples( p, SynthesisContext.current() );
+    }
 
-                p.pitch_anchor_location = Math.max( AcousticParameters.MIN_PITCH_ANCHOR_LOCATION,
-                                Math.min( AcousticParameters.MAX_PITCH_ANCHOR_LOCATION, (int) g.sample() ) );
+    /**
+     * Generates a bout using the random number generator, FFT plans and scratch buffers of the given context
+     *
+     * @param p
+     * @param ctx must not be used by another thread at the same time
+     * @return
+     */
+    public static double[] generateBoutSamples( BoutParameters p, SynthesisContext ctx ) {
+        return generateBoutSamples( p, ctx, boutRandom( p, ctx ) );
+    }
 
-                for (int j = 0; j < p.pauseDuration_mean * 44.1; j++) {
-                    sound.add( 0.0 );
-                }
-            }
-        }
+    /**
+     * Generates a bout with the random numbers of the given stream, ignoring {@link BoutParameters#seed}.
+     * Every syllable is synthesised with its own stream seeded from the given one, so the same stream state always gives the same bout
+     *
+     * @param p
+     * @param ctx must not be used by another thread at the same time
+     * @param random
+     * @return
+     */
+    public static double[] generateBoutSamples( BoutParameters p, SynthesisContext ctx, RandomStream random ) {
+        return renderBout( planBout( p, random ), ctx );
+    }
 
-        //add some silence before and after the entire bout
-        sound.addAll( 0, SILENCE_TIME );
-        sound.addAll( SILENCE_TIME );
+    /**
+     * Renders a bout in the given quality, see {@link RenderQuality#derive(BoutParameters)}
+     *
+     * @param p is not modified
+     * @param quality
+     * @return
+     */
+    public static double[] generateBoutSamples( BoutParameters p, RenderQuality quality ) {
+        return generateBoutSamples( quality.derive( p ) );
+    }
 
-        return sound;
+    /**
+     * Renders a batch of bouts concurrently, see {@link #renderBouts(List, BoutListener)}. The bouts are planned up front on
+     * the calling thread, so bouts without a seed draw from the stream of its context in the order of the list
+     *
+     * @param parameters
+     * @return the bouts in the order of the parameters
+     */
+    public static List<double[]> generateBouts( List<BoutParameters> parameters ) {
+        return renderBouts( planBouts( parameters ) );
     }
 
     /**
-     * Generates an array of gaussian noise
+     * Renders a batch of bouts concurrently and hands every bout to the listener as soon as it is rendered, see
+     * {@link #renderBouts(List, BoutListener)}
      *
-     * @param length
-     * @return
+     * @param parameters
+     * @param listener
      */
-    private static double[] generateGaussianWindow( int length ) {
-        //(exp(-12*(((1:n)/n)-0.5)^2)-exp(-12))/(1-exp(-12))
-        final double[] w = new double[length];
-        for (int i = 0; i < w.length; i++) {
-            w[i] = Math.exp( -12 * Math.pow( i / (double) w.length - .5, 2 ) - Math.exp( -12 ) ) / (1 - Math.exp( -12 ));
-        }
-        return w;
+    public static void generateBouts( List<BoutParameters> parameters, BoutListener listener ) {
+        renderBouts( planBouts( parameters ), listener );
     }
 
     /**
@@ -450,30 +797,39 @@ public class Generator {
      * @param p
      * @return
      */
-    private static List<Double> generateSyllable( BoutParameters p, List<Double> pitch ) {
+    private static double[] generateSyllable( SynthesisContext ctx, RandomStream random, BoutParameters p, double[] pitch ) {
 
 //                        time = as.numeric(1:length(pitch)) # as.numeric to prevent integer overflow
-        final List<Integer> gc = getGlottalCycles( pitch ); // our "glottal cycles"
-
-        // readjust major timber pars according to the given breathingStrength
-        if (p.creakyBreathy < 0) { // for creaky voice, adjust:
-            p.jitterDep -= p.creakyBreathy;
-            p.shimmerDep -= p.creakyBreathy * 2;
-            // driftDep = driftDep - breathingStrength*6
-        }
-        // for both creaky and breathy voices, adjust:
-        p.spectralSlope += p.creakyBreathy * .3;
-        p.megaFormant_strength += Math.abs( p.creakyBreathy ) * 60;
-        p.formantStrength = (int) Math.max( 0, p.formantStrength - Math.abs( p.creakyBreathy ) * p.formantStrength / 4.0 );
-        p.rolloff = (int) Math.max( 0, p.rolloff + p.creakyBreathy * 40 );
+        final int[] gc = getGlottalCycles( pitch, p.sampleRate ); // our "glottal cycles"
+        final double pointsPerMs = p.sampleRate / 1000.0;
 
         // calculate the number of harmonics to generate (from lowest pitch to at least 8000 Hz) and the spectral filter (think equalizer)
-        final double maxPitch = pitch.stream().max( Double::compare ).get();
-        final int nHarmonics = (int) ((20000 - 2 * maxPitch) / maxPitch); // was length (seq (2*max(pitch), 20000, by=max(pitch)) )
+        double maxPitch = Double.NEGATIVE_INFINITY;
+        double minPitch = Double.POSITIVE_INFINITY;
+        for (final double d : pitch) {
+            maxPitch = Math.max( maxPitch, d );
+            minPitch = Math.min( minPitch, d );
+        }
+        // harmonics above the Nyquist frequency would alias, whatever the mode
+        final double harmonicCeiling = Math.min( p.maxHarmonicFrequency, p.sampleRate / 2.0 );
+        final int nHarmonics;
+        if (p.bandLimited) {
+            // enough harmonics for the lowest pitch, the oscillator bank drops them wherever the pitch is higher
+            nHarmonics = (int) (harmonicCeiling / Math.max( minPitch, AcousticParameters.MIN_PITCH ));
+        }
+        else {
+            nHarmonics = (int) ((harmonicCeiling - 2 * maxPitch) / maxPitch); // was length (seq (2*max(pitch), 20000, by=max(pitch)) )
+        }
         // filter = 2^(-rolloff/10*(1:22050)/1000) # ~defaults to -6 dB per 1000 Hz # plot(filter,type='l')
         // filter = filter[seq(1, 22050, length.out=windowLength_points/2)]
-        final double[] filter = getSpectralEnvelope( p.spectralSlope, p.formantStrength, p.lenRarFilter, p.spectralNoise_strength, p.spanFilter,
-                        p.megaFormant_mean, p.megaFormant_sd, p.megaFormant_strength, p.femaleVoice, p.randomVowel, 2048, p.exactFormants );
+        final SynthesisProfile profile = ctx.getActiveProfile();
+        long t = profile != null ? System.nanoTime() : 0;
+        final double[] filter = getSpectralEnvelope( random, p.spectralSlope, p.formantStrength, p.lenRarFilter, p.spectralNoise_strength, p.spanFilter,
+                        p.megaFormant_mean, p.megaFormant_sd, p.megaFormant_strength, p.femaleVoice, p.randomVowel, p.windowLength_points, p.sampleRate,
+                        p.exactFormants, new double[p.windowLength_points / 2] );
+        if (profile != null) {
+            t = profile.record( Stage.SPECTRAL_ENVELOPE, t, filter.length );
+        }
 
         // calculate vibrato
         double vibrato;
@@ -484,59 +840,78 @@ public class Generator {
         }
         else {
             vibrato_multipl = Math.pow( 2, p.vibratoDep / 12 ) - 1; // convert from semitones to % of F0
-            vibrato = Math.sin( 2 * Math.PI * pitch.size() * 1000 / p.vibratoLen / 44100 ); // 1000/vibratoLen (in ms) gives the frequency of vibrato in Hz # plot(vibrato[1:10000], type='l')
+            vibrato = Math.sin( 2 * Math.PI * pitch.length * 1000 / p.vibratoLen / p.sampleRate ); // 1000/vibratoLen (in ms) gives the frequency of vibrato in Hz # plot(vibrato[1:10000], type='l')
         }
 
         // calculate jitter (random variation of F0)
-        final double[] jitter = p.jitterDep > 0 ? getJitter( pitch.size(), gc, p.jitterDep ) : null;
+        final double[] jitter = p.jitterDep > 0 ? getJitter( ctx, random, pitch.length, gc, p.jitterDep ) : null;
 
         // calculate random drift of F0
-        List<Double> drift;
-        final double driftPeriod_points = 44.1 * p.driftLen;
-        if (p.driftDep > 0 && driftPeriod_points <= pitch.size()) {
-            drift = getDrift( pitch.size(), p.driftDep, 4 );
+        double[] drift;
+        final double driftPeriod_points = pointsPerMs * p.driftLen;
+        if (p.driftDep > 0 && driftPeriod_points <= pitch.length) {
+            drift = getDrift( ctx, random, pitch.length, p.driftDep, 4 );
         }
         else {
             drift = null;
         }
 
         // calculate final pitch contour
-        final double[] integr = new double[pitch.size()];
+        final double[] integr = ctx.getScratch( Scratch.PHASE, pitch.length );
 
         double total = 0.0;
-        for (int i = 0; i < pitch.size(); i++) {
-            final double d = pitch.get( i ) * (1 + vibrato * vibrato_multipl + (drift != null ? drift.get( i ) : 0) + (jitter != null ? jitter[i] : 0));
-            pitch.set( i, d );
+        for (int i = 0; i < pitch.length; i++) {
+            final double d = pitch[i] * (1 + vibrato * vibrato_multipl + (drift != null ? drift[i] : 0) + (jitter != null ? jitter[i] : 0));
+            pitch[i] = d;
 
             total += d;
 
             integr[i] = total;
-            integr[i] /= 44100.0;
+            integr[i] /= p.sampleRate;
+        }
+        if (profile != null) {
+            t = profile.record( Stage.PITCH_MODULATION, t, pitch.length );
         }
 
         // generate sound with harmonics
-        final double[] ampl = new double[pitch.size()];
-        for (int h = 1; h < nHarmonics + 1; h++) {
-            for (int i = 0; i < ampl.length; i++) {
-                ampl[i] += Math.sin( 2 * h * Math.PI * integr[i] ) * Math.pow( h, -p.rolloff / 10.0 ); //NB: not 2^rolloff but h^rolloff (amplitude ~halves every octave, not every harmonic!). Visualization: plot (1:10, (1:10)^(-rolloff/10))   Lindblad (1992, "Röst") cites 12 dB as normal for humans. Alternatively, +pi/2 to shift the phase and start with max, not 0 (but then the shape is weird); good for adding vocal fry, shimmer etc - ampl vector begins in the middle of the first "glottal cycle"
-            }
+        // NB: not 2^rolloff but h^rolloff (amplitude ~halves every octave, not every harmonic!). Visualization: plot (1:10, (1:10)^(-rolloff/10))   Lindblad (1992, "Röst") cites 12 dB as normal for humans. Alternatively, +pi/2 to shift the phase and start with max, not 0 (but then the shape is weird); good for adding vocal fry, shimmer etc - ampl vector begins in the middle of the first "glottal cycle"
+        final double[] ampl = ctx.getScratch( Scratch.HARMONICS, pitch.length );
+        Arrays.fill( ampl, 0, pitch.length, 0.0 );
+        if (p.synthesisEngine == SynthesisEngine.WAVETABLE) {
+            // always band-limited, since the mip-map level follows the instantaneous pitch
+            GlottalWavetable.forRolloff( p.rolloff, (int) harmonicCeiling ).render( integr, pitch, pitch.length, ampl );
         }
-
-        // add shimmer (random variation in amplitude)
-        if (p.shimmerDep > 0) {
-            addShimmer( ampl, pitch, p.shimmerDep, gc );
+        else if (p.bandLimited) {
+            final double[] gains = OscillatorBank.rolloffGains( nHarmonics, p.rolloff );
+            OscillatorBank.synthesize( integr, pitch, harmonicCeiling, pitch.length, gains, nHarmonics, ampl );
+        }
+        else {
+            final double[] gains = OscillatorBank.rolloffGains( nHarmonics, p.rolloff );
+            OscillatorBank.synthesize( integr, pitch.length, gains, nHarmonics, ampl );
+        }
+        if (profile != null) {
+            t = profile.record( Stage.HARMONICS, t, pitch.length );
         }
 
-        // add vocal fry (dampen or mute some % of glottal cycles, as in constricted voice)
-        if (p.subharmDep > 0) {
-            addVocalFry( ampl, pitch, p.nSubharm, p.subharmDep, gc );
+        // add shimmer (random variation in amplitude) and vocal fry (dampen or mute some % of glottal cycles, as in constricted voice)
+        if (p.shimmerDep > 0 || p.subharmDep > 0) {
+            applyCycleGains( random, ampl, gc, p.shimmerDep, p.nSubharm, p.subharmDep );
+            if (profile != null) {
+                t = profile.record( Stage.CYCLE_GAINS, t, pitch.length );
+            }
         }
 
-        List<Double> sound_new = applyFFT( ampl, p, filter );
+        double[] sound_new = applyFFT( ctx, ampl, pitch.length, p, filter );
+        if (profile != null) {
+            t = profile.record( Stage.FILTER, t, sound_new.length );
+        }
 
         // add general fade in / fade out
         if (p.attackLen > 0) {
-            sound_new = fadeInOutLinear( sound_new, true, true, (int) Math.floor( p.attackLen * 44.1 ) );
+            sound_new = fadeInOutLinear( sound_new, true, true, (int) Math.floor( p.attackLen * pointsPerMs ) );
+            if (profile != null) {
+                t = profile.record( Stage.CROSSFADE, t, sound_new.length );
+            }
         }
 
         // add breathing
@@ -545,25 +920,31 @@ public class Generator {
         }
         else {
 
-            List<Double> brBef = null;
-            List<Double> brAft = null;
-            List<Double> brDur = new ArrayList<>();
-            for (int i = 0; i < sound_new.size(); i++) {
-                brDur.add( 0.0 );
-            }
+            double[] brBef = null;
+            double[] brAft = null;
+            double[] brDur = new double[sound_new.length];
 
             if (p.breathingType.contains( BreathingType.BEFORE )) {
-                brBef = getBreathing( (int) ((p.breathing_dur + p.attackLen) * 44.1), filter, p );
-                brBef = fadeInOutLinear( brBef, true, p.breathingType.contains( BreathingType.DURING ), (int) Math.floor( p.attackLen * 44.1 ) );
+                brBef = getBreathing( ctx, random, (int) ((p.breathing_dur + p.attackLen) * pointsPerMs), filter, p );
+                brBef = fadeInOutLinear( brBef, true, p.breathingType.contains( BreathingType.DURING ), (int) Math.floor( p.attackLen * pointsPerMs ) );
+                if (profile != null) {
+                    t = profile.record( Stage.BREATHING, t, brBef.length );
+                }
             }
             if (p.breathingType.contains( BreathingType.DURING )) {
-                brDur = getBreathing( sound_new.size(), filter, p );
+                brDur = getBreathing( ctx, random, sound_new.length, filter, p );
                 brDur = fadeInOutLinear( brDur, !p.breathingType.contains( BreathingType.BEFORE ), !p.breathingType.contains( BreathingType.AFTER ),
-                                (int) (p.attackLen * 44.1) ); // don't fade in/out if preceded/followed by more breathing
+                                (int) (p.attackLen * pointsPerMs) ); // don't fade in/out if preceded/followed by more breathing
+                if (profile != null) {
+                    t = profile.record( Stage.BREATHING, t, brDur.length );
+                }
             }
             if (p.breathingType.contains( BreathingType.AFTER )) {
-                brAft = getBreathing( (int) ((p.breathing_dur + p.attackLen) * 44.1), filter, p );
-                brAft = fadeInOutLinear( brAft, !p.breathingType.contains( BreathingType.DURING ), true, (int) (p.attackLen * 44.1) );
+                brAft = getBreathing( ctx, random, (int) ((p.breathing_dur + p.attackLen) * pointsPerMs), filter, p );
+                brAft = fadeInOutLinear( brAft, !p.breathingType.contains( BreathingType.DURING ), true, (int) (p.attackLen * pointsPerMs) );
+                if (profile != null) {
+                    t = profile.record( Stage.BREATHING, t, brAft.length );
+                }
             }
 
             // calculate the fade-in/out according to breathingStrength_diff, mix voiced part with breathing
@@ -572,30 +953,29 @@ public class Generator {
 
                 if (brBef != null) {
                     brBef = fadeInOutExponential( brBef, p.breathingStrength_diff );
-                    sound_new = crossFade( brBef, sound_new, 2 );
+                    sound_new = crossFade( ctx, p.sampleRate, brBef, sound_new );
                 }
                 if (brAft != null) {
                     brAft = fadeInOutExponential( brAft, -p.breathingStrength_diff );
-                    sound_new = crossFade( sound_new, brAft, 2 );
+                    sound_new = crossFade( ctx, p.sampleRate, sound_new, brAft );
                 }
             }
             else {
                 // if breathing is present during the voiced part, put together all breathing elements and fade in/out together
-                List<Double> breathing;
+                double[] breathing;
 
                 int padDir = 2;
                 if (p.breathingType.contains( BreathingType.BEFORE ) && !p.breathingType.contains( BreathingType.AFTER )) {
                     padDir = 0;
-                    breathing = crossFade( brBef, brDur, 2 );
+                    breathing = crossFade( ctx, p.sampleRate, brBef, brDur );
                 }
                 else if (!p.breathingType.contains( BreathingType.BEFORE ) && p.breathingType.contains( BreathingType.AFTER )) {
                     padDir = 1;
-                    breathing = crossFade( brDur, brAft, 2 );
+                    breathing = crossFade( ctx, p.sampleRate, brDur, brAft );
                 }
                 else if (p.breathingType.contains( BreathingType.BEFORE ) && p.breathingType.contains( BreathingType.AFTER )) {
                     padDir = 2;
-                    breathing = crossFade( brBef, brDur, 2 );
-                    breathing = crossFade( breathing, brAft, 2 );
+                    breathing = crossFade( ctx, p.sampleRate, brBef, brDur, brAft );
                 }
                 else {
                     breathing = brDur;
@@ -603,13 +983,16 @@ public class Generator {
 
                 breathing = fadeInOutExponential( breathing, p.breathingStrength_diff );
 
-                sound_new = matchLengths( sound_new, breathing.size(), padDir ); // pad with 0 to length(breathing) adding zeros left/right/both. Note that the length of two crossFaded files is hard to predict (b/c of looking for zero crossings), hence the need for this roundabout way here to make sure the length of breathing is the same as the length of sound_new
-                assert sound_new.size() == breathing.size();
+                sound_new = matchLengths( sound_new, breathing.length, padDir ); // pad with 0 to length(breathing) adding zeros left/right/both. Note that the length of two crossFaded files is hard to predict (b/c of looking for zero crossings), hence the need for this roundabout way here to make sure the length of breathing is the same as the length of sound_new
+                assert sound_new.length == breathing.length;
 
-                for (int i = 0; i < sound_new.size(); i++) {
-                    sound_new.set( i, (1 - p.breathingStrength) * sound_new.get( i ) + breathing.get( i ) * p.breathingStrength );
+                for (int i = 0; i < sound_new.length; i++) {
+                    sound_new[i] = (1 - p.breathingStrength) * sound_new[i] + breathing[i] * p.breathingStrength;
                 }
             }
+            if (profile != null) {
+                profile.record( Stage.CROSSFADE, t, sound_new.length );
+            }
             return sound_new;
         }
 
@@ -625,18 +1008,23 @@ public class Generator {
      * @param overlap
      * @return
      */
-    private static List<Double> getBreathing( int len, double[] filter, BoutParameters p ) {
+    private static double[] getBreathing( SynthesisContext ctx, RandomStream random, int len, double[] filter, BoutParameters p ) {
 
         if (len <= 0) {
-            return new ArrayList<>();
+            return new double[0];
+        }
+        if (p.spectralBreathing && p.filterEngine == FilterEngine.STFT) {
+            final double[] breathing = new double[len];
+            ctx.getStftEngine( p.windowLength_points, p.overlap ).noise( random, filter, breathing, len );
+            return breathing;
         }
-        final double noise[] = new double[2 * len];
+        final double noise[] = ctx.getScratch( Scratch.NOISE, 2 * len );
         for (int i = 0; i < 2 * len; i++) {
-            noise[i] = Math.random() * 2 - 1;
+            noise[i] = random.nextDouble() * 2 - 1;
         }
 
         // apply filter
-        List<Double> breathing = applyFFT( noise, p, filter );
+        double[] breathing = applyFFT( ctx, noise, 2 * len, p, filter );
 
         // make sure the length of breathing is exactly right. Needed because FFT + inverse FFT does not return a vector of exactly the same length as the original
         breathing = matchLengths( breathing, len, 2 );
@@ -653,19 +1041,19 @@ public class Generator {
      * @param driftPeriod_points controls the rate of change (fast wiggling vs. slow modulation of pitch contour)
      * @return a random walk of length(time) with the amount of change controlled by driftDep (in semitones)
      */
-    private static List<Double> getDrift( int time, int driftDep, int driftPeriod_points ) {
+    private static double[] getDrift( SynthesisContext ctx, RandomStream random, int time, int driftDep, int driftPeriod_points ) {
 
         final double drift_multipl = Math.pow( 2, driftDep / 12.0 ) - 1; // convert from semitones to % of F0
         double total = 0;
-        final Double[] drift = new Double[time];
+        final double[] drift = ctx.getScratch( Scratch.DRIFT, time );
 
         double minDrift = Double.MAX_VALUE;
         /* essentially a random walk, longer than needed because median smoothing in rollmedian() needs more data before and after.
          *   1000 to speed up the process (MUCH faster than doing a full-resolution random walk and smoothing afterwards)
          */
-        for (int i = 0; i < drift.length; i++) {
+        for (int i = 0; i < time; i++) {
             drift[i] = total;
-            if (RANDOM.nextBoolean()) {
+            if (random.nextBoolean()) {
                 total++;
             }
             else {
@@ -676,14 +1064,14 @@ public class Generator {
 
         double maxDrift = Double.MIN_VALUE;
         // normalize so it starts with zero (aligned with pitchStart) and spans driftDep
-        for (int i = 0; i < drift.length; i++) {
+        for (int i = 0; i < time; i++) {
             drift[i] -= minDrift;
             maxDrift = Math.max( drift[i], maxDrift );
         }
 
         double first = 0;
 
-        for (int i = 0; i < drift.length; i++) {
+        for (int i = 0; i < time; i++) {
             drift[i] /= maxDrift;
             drift[i] *= drift_multipl;
             if (i == 0) {
@@ -695,7 +1083,7 @@ public class Generator {
             }
         }
 
-        return Arrays.asList( drift );
+        return drift;
     }
 
     /**
@@ -710,28 +1098,25 @@ public class Generator {
      * @param maleFemale
      * @param randomVowel
      * @param lenFilter
-     * @return
+     * @return the envelope, which for fixed vowels is shared with the cache and must not be modified
      */
-    private static double[] getFormantEnvelope( Formant exactFormants, boolean maleFemale, boolean randomVowel, int len ) {
+    static double[] getFormantEnvelope( RandomStream random, Formant exactFormants, boolean maleFemale, boolean randomVowel, int len,
+                    int sampleRate ) {
         double[] formantFreq;
         double[] formantAmp;
         double[] formantBandwidth;
         if (randomVowel) {
             formantFreq = new double[4];
-            formantFreq[0] = 200 + (900 - 200) * Math.random();
+            formantFreq[0] = 200 + (900 - 200) * random.nextDouble();
             for (int i = 1; i < formantFreq.length; i++) {
-                formantFreq[i] = formantFreq[i - 1] + 350 + (2500 - 350) * Math.random();
+                formantFreq[i] = formantFreq[i - 1] + 350 + (2500 - 350) * random.nextDouble();
             }
-            final NormalDistribution rnorm = new NormalDistribution( 1, .1 );
             formantAmp = new double[formantFreq.length];
-            for (int i = 0; i < formantAmp.length; i++) {
-                formantAmp[i] = rnorm.sample();
-            }
+            Sampler.fillGaussian( random, formantAmp, 0, formantAmp.length, 1, .1 );
 
-            final GammaDistribution rgamma = new GammaDistribution( 200 * 200 / (100.0 * 100.0), 1 / (200 / (100.0 * 100.0)) ); //R code had rate, Java lib needs scale which is 1/rate
             formantBandwidth = new double[formantFreq.length];
             for (int i = 0; i < formantBandwidth.length; i++) {
-                formantBandwidth[i] = rgamma.sample();
+                formantBandwidth[i] = Sampler.nextGamma( random, 200 * 200 / (100.0 * 100.0), 1 / (200 / (100.0 * 100.0)) ); //R code had rate, we need scale which is 1/rate
             }
 
         }
@@ -751,50 +1136,39 @@ public class Generator {
             }
         }
 
-        final double[] formantEnvelope = new double[22050]; //since formant frequencies are given in Hz, we start by taking a full-length filter from 1 to Nyquist freq (22050), then shorten it to length 'len'
-
-        for (int f = 0; f < formantFreq.length; f++) {
-            final double mg = formantFreq[f]; // mean of gamma distribution. Could use normal instead, but gamma is pretty handy in this case
-            final double sdg = formantBandwidth[f]; // sd of gamma distribution
-            final GammaDistribution dgamma = new GammaDistribution( mg * mg / (sdg * sdg), 1 / (mg / (sdg * sdg)) ); //R code had rate, Java lib needs scale which is 1/rate
-            final double[] formant = new double[22050];
-            double maxFormant = Double.MIN_VALUE;
-            for (int i = 0; i < 22050; i++) {
-                formant[i] = dgamma.density( i + 1 );
-                maxFormant = Math.max( maxFormant, formant[i] );
-            }
-            for (int i = 0; i < 22050; i++) {
-                formantEnvelope[i] += formant[i] / maxFormant * formantAmp[f];
-            }
-
-        }
-
-        final double deltaFormat = (formantEnvelope.length - 1) / (len - 1);
-        final double[] ret = new double[len];
-
-        for (int i = 0; i < len; i++) {
-            ret[i] = formantEnvelope[(int) (i * deltaFormat)];
+        if (randomVowel) {
+            return computeFormantEnvelope( formantFreq, formantAmp, formantBandwidth, len, sampleRate );
         }
-        return ret;
+        return FORMANT_ENVELOPES.computeIfAbsent( new FormantEnvelopeKey( formantFreq, formantAmp, formantBandwidth, len, sampleRate ),
+                        k -> computeFormantEnvelope( k.freq, k.amp, k.bandwidth, k.len, k.sampleRate ) );
+    }
 
+    /**
+     * @return the cache of formant envelopes for fixed vowels, e.g. to check its hit rate
+     */
+    public static LruCache<?, double[]> getFormantEnvelopeCache() {
+        return FORMANT_ENVELOPES;
     }
 
     /**
      * @param pitch
+     * @param sampleRate
      * @return a vector of indices giving the borders between "glottal cycles",
      * assuming that we know the true F0 at each time point (as in synthesized sounds)
      * and that max amplitude gives us the center of a glottal cycle
      */
-    private static List<Integer> getGlottalCycles( List<Double> pitch ) {
-        final List<Integer> glottalCycles = new ArrayList<>();
-        int i = 0; // the first border is the first time point
-        while (i < pitch.size()) {
-            glottalCycles.add( i );
-            i = (int) (i + Math.floor( 44100.0 / pitch.get( i ) )); // take steps proportionate to the current F0
-        }
-        if (glottalCycles.get( glottalCycles.size() - 1 ) != pitch.size()) {
-            glottalCycles.add( pitch.size() );// the last border is simply the last time point
-        }
+    private static int[] getGlottalCycles( double[] pitch, int sampleRate ) {
+        // the first border is the first time point, then take steps proportionate to the current F0
+        int count = 0;
+        for (int i = 0; i < pitch.length; i = (int) (i + Math.floor( sampleRate / pitch[i] ))) {
+            count++;
+        }
+        final int[] glottalCycles = new int[count + 1];
+        int c = 0;
+        for (int i = 0; i < pitch.length; i = (int) (i + Math.floor( sampleRate / pitch[i] ))) {
+            glottalCycles[c++] = i;
+        }
+        glottalCycles[c] = pitch.length;// the last border is simply the last time point
         return glottalCycles;
     }
 
@@ -806,33 +1180,30 @@ public class Generator {
      * @param jitterDep
      * @return
      */
-    private static double[] getJitter( int time, List<Integer> glottalCycles, int jitterDep ) {
+    private static double[] getJitter( SynthesisContext ctx, RandomStream random, int time, int[] glottalCycles, int jitterDep ) {
         if (jitterDep <= 0) {
             throw new IllegalArgumentException( "jitterDept must be positive" );
         }
 
-        final int nInt = glottalCycles.size() - 1; // these are the intervals whose F0 is to be adjusted at random
+        final int nInt = glottalCycles.length - 1; // these are the intervals whose F0 is to be adjusted at random
 
         final double[] jitter;
 
         if (nInt >= 2) {
-            jitter = new double[time];
+            jitter = ctx.getScratch( Scratch.JITTER, time );
             final double jitter_multipl = Math.pow( 2, jitterDep / 12.0 ) - 1; // convert semitones to Hz
-            final NormalDistribution norm = new NormalDistribution( 0, jitter_multipl );
             final double[] rnorm = new double[nInt];
-            for (int i = 0; i < rnorm.length; i++) {
-                rnorm[i] = norm.sample();
-            }
+            Sampler.fillGaussian( random, rnorm, 0, nInt, 0, jitter_multipl );
             int jitterOffset = 0;
-            for (int i = 1; i < glottalCycles.size(); i++) {
-                final int diff = glottalCycles.get( i ) - glottalCycles.get( i - 1 );
+            for (int i = 1; i < glottalCycles.length; i++) {
+                final int diff = glottalCycles[i] - glottalCycles[i - 1];
                 for (int j = 0; j < diff; j++) {
                     jitter[jitterOffset] = rnorm[i - 1];
                     jitterOffset++;
                 }
 
             }
-            while (jitterOffset < jitter.length) {
+            while (jitterOffset < time) {
                 jitter[jitterOffset] = rnorm[rnorm.length - 1];
                 jitterOffset++;
             }
@@ -845,41 +1216,35 @@ public class Generator {
     }
 
     public static List<Double> getPitchContour( int duration_ms, int pitch_start, int pitch_anchor, int pitch_end, int pitch_anchor_location, boolean female ) {
-        final int time = (int) Math.floor( duration_ms * 44.1 );
-        final double pitch_anchor_time = pitch_anchor_location / 100.0 * duration_ms;
-        final double pitch_anchor_time_points = Math.floor( pitch_anchor_time * 44.1 );
-
-        double[] x;
-        double[] y;
-
-        if (pitch_anchor_location < 30) {
-            x = new double[] { 0, pitch_anchor_time_points, time - pitch_anchor_time_points, time };
-            y = new double[] { pitch_start, pitch_anchor, Math.floor( pitch_anchor / 1.1 ), pitch_end };
-        }
-        else {
-            x = new double[] { 0, pitch_anchor_time_points, time };
-            y = new double[] { pitch_start, pitch_anchor, pitch_end };
-        }
-
-        final LoessInterpolator inter = new LoessInterpolator( .75, 4 );
-
-        final PolynomialSplineFunction function = inter.interpolate( x, y );
-        //let's draw a smooth curve through the given pitch anchors
+        return toList( getPitchContourSamples( duration_ms, pitch_start, pitch_anchor, pitch_end, pitch_anchor_location, female ) );
+    }
 
-        final List<Double> ret = new ArrayList<>();
-        for (int i = 0; i < time; i++) {
-            ret.add( function.value( i ) * (female ? 2 : 1) );
-        }
+    public static double[] getPitchContourSamples( int duration_ms, int pitch_start, int pitch_anchor, int pitch_end, int pitch_anchor_location,
+                    boolean female ) {
+        return getPitchContourSamples( duration_ms, pitch_start, pitch_anchor, pitch_end, pitch_anchor_location, female, AcousticParameters.DEFAULT_SAMPLE_RATE );
+    }
 
-        //If the interpolation gave us some negative pitch, we transpose this by Math.abs(minimum)
+    /**
+     * Computes the pitch of every sample of a syllable of the given duration, rendered at the given sample rate. Recently
+     * used contours are cached, so repeated syllable shapes only cost a copy
+     */
+    public static double[] getPitchContourSamples( int duration_ms, int pitch_start, int pitch_anchor, int pitch_end, int pitch_anchor_location,
+                    boolean female, int sampleRate ) {
+        final double[] cached = PITCH_CONTOURS.computeIfAbsent(
+                        new PitchContourKey( duration_ms, pitch_start, pitch_anchor, pitch_end, pitch_anchor_location, female, sampleRate ),
+                        Generator::computePitchContour );
+        return cached.clone();
+    }
 
-        final Double min = ret.stream().collect( Collectors.summarizingDouble( Double::doubleValue ) ).getMin();
-        if (min < 0) {
-            final double delta = Math.abs( min );
-            ret.replaceAll( d -> d + delta );
-        }
+    /**
+     * @return the cache of pitch contours, e.g. to check its hit rate
+     */
+    public static LruCache<?, double[]> getPitchContourCache() {
+        return PITCH_CONTOURS;
+    }
 
-        return ret;
+    public static Executor getRenderExecutor() {
+        return renderExecutor;
     }
 
     /**
@@ -912,121 +1277,67 @@ public class Generator {
      * @param exactFormants
      * @return
      */
-    private static double[] getSpectralEnvelope( double spectralSlope, int formantStrength, int lenRarFilter, int spectralNoise_strength, double spanFilter,
+    static double[] getSpectralEnvelope( RandomStream random, double spectralSlope, int formantStrength, int lenRarFilter, int spectralNoise_strength, double spanFilter,
                     int megaFormant_mean, int megaFormant_sd, int megaFormant_strength, boolean maleFemale, boolean randomVowel, int windowLength_points,
-                    Formant exactFormants ) {
+                    int sampleRate, Formant exactFormants, double[] filter ) {
 
-        // compute the basic shape of spectral envelope (log scale): linear decay controlled by spectralSlope
+        // the filter always spans 0 Hz to the Nyquist frequency. The basic shape of the spectral envelope (log scale), a
+        // linear decay controlled by spectralSlope, and the megaFormant only depend on the parameters
         final int lenFilter = (int) Math.floor( windowLength_points / 2.0 );
-        final double[] specEnv_basic = new double[lenFilter];
-        for (int i = 0; i < lenFilter; i++) {
-            specEnv_basic[i] = (i + 1) * -spectralSlope;
-        }
-
-        // get a megaFormant, which amplifies high frequencies for constricted, creaky voices
-        double[] megaFormant;
-        if (megaFormant_strength != 0) {
-            final NormalDistribution norm = new NormalDistribution( megaFormant_mean, megaFormant_sd );
-            megaFormant = new double[lenFilter];
-            double maxMegaFormant = Double.MIN_VALUE;
-            for (int i = 0; i < lenFilter; i++) {
-                megaFormant[i] = norm.density( Math.min( i, 22050 ) );
-                maxMegaFormant = Math.max( maxMegaFormant, megaFormant[i] );
-            }
-            for (int i = 0; i < lenFilter; i++) {
-                megaFormant[i] = megaFormant[i] / maxMegaFormant * megaFormant_strength;
-            }
-        }
-        else {
-            megaFormant = null;
-        }
+        final double[] base = SPECTRAL_BASES.computeIfAbsent(
+                        new SpectralBaseKey( spectralSlope, megaFormant_mean, megaFormant_sd, megaFormant_strength, windowLength_points, sampleRate ),
+                        Generator::computeSpectralBase );
 
         // compute some random component to make the filter more naturalistic/individual
         // decreasing SDs of spectral deviations
-        final double[] SDs = new double[lenRarFilter];
-        final double delta = .9 / (lenRarFilter - 1); //seq of .1 til 1 with lenRarFilterSteps;
-        double v = .1;
-        for (int i = 0; i < lenRarFilter; i++) {
-            SDs[i] = v;
-            v += delta;
-        }
         final double[] noise_short = new double[lenRarFilter];
+        final double delta = .9 / (lenRarFilter - 1); //seq of .1 til 1 with lenRarFilterSteps;
+        double sd = .1;
         double maxNoise = Double.MIN_VALUE;
         for (int i = 0; i < lenRarFilter; i++) {
-            final NormalDistribution n = new NormalDistribution( 0.0, SDs[i] );
-            noise_short[i] = n.sample();
+            noise_short[i] = sd * Sampler.nextGaussian( random );
             maxNoise = Math.max( maxNoise, Math.abs( noise_short[i] ) );
-        }
-        for (int i = 0; i < lenRarFilter; i++) {
-            noise_short[i] /= maxNoise;
+            sd += delta;
         }
 
-        // interpolate the noise to have enough points
-        final int[] freqs = new int[lenRarFilter];
-        final double deltaFreq = (lenFilter - 1) / (double) lenRarFilter;
-        double vFreq = 1;
+        //TODO span is ignored here
+        // smooth the noise and interpolate it to have enough points, with a natural cubic spline through the smoothed
+        // points. The interpolated noise is kept in filter until the components are added
+        final double[] xVal = new double[lenRarFilter];
         for (int i = 0; i < lenRarFilter; i++) {
-            freqs[i] = (int) Math.round( vFreq );
-            vFreq += deltaFreq;
-        }
-//        double[] noise_fullLength = new double[lenFilter];
-//        for (int i = 0; i < lenRarFilter; i++) { //lenRarFilter is the length of noise_short
-//            noise_fullLength[freqs[i]] = noise_short[i];
-//        }
-
-        //TODO span is ignored her
-        final double[] xVal = new double[noise_short.length];
-
-        for (int i = 0; i < noise_short.length; i++) {
             xVal[i] = i;
+            noise_short[i] /= maxNoise;
         }
-        final LoessInterpolator fitter = new LoessInterpolator( .75, 4 );
-        final PolynomialSplineFunction function = fitter.interpolate( xVal, noise_short );
+        final double[] smoothed = smoothLoess( noise_short );
+        final int segments = lenRarFilter - 1;
+        final double[] b = new double[segments];
+        final double[] c = new double[segments + 1];
+        final double[] d = new double[segments];
+        fitNaturalSpline( xVal, smoothed, b, c, d );
 
-        final double[] noise_fullLength = new double[lenFilter];
         double maxNoiseFullLength = Double.MIN_VALUE;
-        final double deltaNoise = (noise_short.length - 1) / (double) (noise_fullLength.length - 1); // seq(0:63 lenOut=1024)
-        for (int i = 0; i < noise_fullLength.length; i++) {
-            noise_fullLength[i] = function.value( i * deltaNoise );
-            maxNoiseFullLength = Math.max( maxNoiseFullLength, Math.abs( noise_fullLength[i] ) );
-        }
-
-        // normalize to spectralNoise_strength
-        for (int i = 0; i < noise_fullLength.length; i++) {
-            noise_fullLength[i] /= maxNoiseFullLength;
-            noise_fullLength[i] *= spectralNoise_strength;
+        final double deltaNoise = segments / (double) (lenFilter - 1); // seq(0:63 lenOut=1024)
+        for (int i = 0; i < lenFilter; i++) {
+            final double x = i * deltaNoise;
+            final int j = Math.min( (int) x, segments - 1 );
+            final double t = x - j;
+            filter[i] = smoothed[j] + t * (b[j] + t * (c[j] + t * d[j]));
+            maxNoiseFullLength = Math.max( maxNoiseFullLength, Math.abs( filter[i] ) );
         }
 
-        // get formants and normalize to range from 0 to formantStrength
-        double[] formantEnvelope;
-        if (formantStrength > 0) {
-            formantEnvelope = getFormantEnvelope( exactFormants, maleFemale, randomVowel, lenFilter );
-            for (int i = 0; i < formantEnvelope.length; i++) {
-                formantEnvelope[i] *= formantStrength;
-            }
-        }
-        else {
-            formantEnvelope = new double[lenFilter];
-            Arrays.fill( formantEnvelope, 1 );
-        }
+        // get formants, to range from 0 to formantStrength
+        final double[] formantEnvelope = formantStrength > 0 ? getFormantEnvelope( random, exactFormants, maleFemale, randomVowel, lenFilter, sampleRate ) : null;
 
-        // get final filter by adding all components
-        final double[] log_filter = new double[lenFilter];
+        // get final filter by adding all components, with the noise normalized to spectralNoise_strength
         double maxLogFilter = Double.MIN_VALUE;
-
         for (int i = 0; i < lenFilter; i++) {
-            log_filter[i] = specEnv_basic[i] + (megaFormant != null ? megaFormant[i] : 0.0) + noise_fullLength[i] + formantEnvelope[i];
-            maxLogFilter = Math.max( maxLogFilter, log_filter[i] );
+            filter[i] = base[i] + filter[i] / maxNoiseFullLength * spectralNoise_strength + (formantEnvelope != null ? formantEnvelope[i] * formantStrength : 1);
+            maxLogFilter = Math.max( maxLogFilter, filter[i] );
         }
 
-        // normalize to range from 0 dB to ~formantStrength+spectralNoise_strength dB
-        for (int i = 0; i < log_filter.length; i++) {
-            log_filter[i] -= maxLogFilter; // ranges from 0 to minus smth
-        }
-        // convert from dB to linear multiplier
-        final double[] filter = new double[log_filter.length];
-        for (int i = 0; i < filter.length; i++) {
-            filter[i] = Math.pow( 2, log_filter[i] / 10.0 );
+        // normalize to range from 0 dB to ~formantStrength+spectralNoise_strength dB and convert from dB to linear multiplier
+        for (int i = 0; i < lenFilter; i++) {
+            filter[i] = Math.exp( (filter[i] - maxLogFilter) * LOG_FILTER_TO_EXP );
         }
 
         return filter;
@@ -1070,14 +1381,17 @@ public class Generator {
         p.randomVowel = true;
         p.syllableDuration_mean = 2000;
 //        final List<Double> curve = g.getPitchContour( p.syllableDuration_mean, p.pitch_start, p.pitch_anchor, p.pitch_end, p.pitch_anchor_location );
-        final List<Double> curve = Generator.generateBout( p );
+        final double[] curve = Generator.generateBoutSamples( p );
 
-        final Double max = curve.stream().collect( Collectors.summarizingDouble( Double::doubleValue ) ).getMax();
+        double max = Double.NEGATIVE_INFINITY;
+        for (final double d : curve) {
+            max = Math.max( max, d );
+        }
 
-        final ByteBuffer audioBuffer = ByteBuffer.allocate( curve.size() * Short.BYTES );
+        final ByteBuffer audioBuffer = ByteBuffer.allocate( curve.length * Short.BYTES );
         final double pow = 65536;
-        for (final Double d : curve) {
-            final int v = (int) (d.doubleValue() / max * pow);
+        for (final double d : curve) {
+            final int v = (int) (d / max * pow);
             audioBuffer.put( (byte) v );
             audioBuffer.put( (byte) (v >> 8) );
 
@@ -1085,7 +1399,7 @@ public class Generator {
 
         final byte[] audioBytes = audioBuffer.array();
 
-        final AudioFormat format = new AudioFormat( 44100, 16, 1, true, false );
+        final AudioFormat format = new AudioFormat( p.sampleRate, 16, 1, true, false );
         final SourceDataLine audioSource = AudioSystem.getSourceDataLine( format );
         audioSource.open( format );
         audioSource.start();
@@ -1096,8 +1410,8 @@ public class Generator {
 //        final BufferedWriter out = new BufferedWriter( o );
 //        final NumberFormat format = NumberFormat.getNumberInstance();
 //        format.setMaximumFractionDigits( 10 );
-//        for (int i = 0; i < curve.size(); i++) {
-//            out.write( i + ";" + format.format( curve.get( i ) ) + System.lineSeparator() );
+//        for (int i = 0; i < curve.length; i++) {
+//            out.write( i + ";" + format.format( curve[i] ) + System.lineSeparator() );
 //        }
 //        out.close();
     }
@@ -1110,46 +1424,453 @@ public class Generator {
      * @return
      * @return
      */
-    private static List<Double> matchLengths( List<Double> myseq, int len, int padDir ) {
+    private static double[] matchLengths( double[] myseq, int len, int padDir ) {
 
-        if (padDir == -1 || myseq.size() == len) {
+        if (padDir == -1 || myseq.length == len) {
             return myseq;
         }
 
         switch (padDir) {
             case 2:
-                if (myseq.size() < len) { // for padding, first add a whole lot of zeros and then trim using the same algorithm as for trimming
-                    for (int i = 0; i < len; i++) {
-                        myseq.add( 0, 0.0 );
-                    }
-                    for (int i = 0; i < len; i++) {
-                        myseq.add( 0.0 );
-                    }
+                if (myseq.length < len) { // for padding, first add a whole lot of zeros and then trim using the same algorithm as for trimming
+                    final double[] padded = new double[myseq.length + 2 * len];
+                    System.arraycopy( myseq, 0, padded, len, myseq.length );
+                    myseq = padded;
                 }
                 final double halflen = len / 2.0;
-                final double center = (1 + myseq.size()) / 2.0;
+                final double center = (1 + myseq.length) / 2.0;
                 final int start = (int) Math.ceil( center - halflen );
-                myseq = myseq.subList( start, start + len - 1 );
-                break;
-            case 0:
-                while (myseq.size() > len) {
-                    myseq.remove( 0 );
-                }
-                while (myseq.size() < len) {
-                    myseq.add( 0, 0.0 );
+                return Arrays.copyOfRange( myseq, start, start + len );
+            case 0: {
+                final double[] ret = new double[len];
+                final int n = Math.min( len, myseq.length );
+                System.arraycopy( myseq, myseq.length - n, ret, len - n, n );
+                return ret;
+            }
+            case 1:
+                return Arrays.copyOf( myseq, len );
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Plans a bout from its seed, or from the stream of the current thread's context if it has none
+     *
+     * @param p is not modified
+     * @return
+     */
+    public static BoutPlan planBout( BoutParameters p ) {
+        return planBout( p, boutRandom( p, SynthesisContext.current() ) );
+    }
+
+    /**
+     * Plans a bout: draws the parameters, seed and following pause of every syllable, without synthesising anything.
+     * Consumes the same random numbers from the given stream no matter how the plan is rendered later
+     *
+     * @param p is not modified
+     * @param random
+     * @return
+     */
+    public static BoutPlan planBout( BoutParameters p, RandomStream random ) {
+        if (p.sampleRate <= 0) {
+            throw new IllegalArgumentException( "sample rate must be positive, not " + p.sampleRate );
+        }
+        final List<BoutPlan.Syllable> syllables = new ArrayList<>( p.numberOfSyllables );
+
+        //Copy the parameters as we might alter them for multiple syllables
+        p = new BoutParameters( p );
+
+        for (int i = 0; i < p.numberOfSyllables; i++) {
+            final long seed = random.nextLong();
+            adjustTimbre( p );
+            final BoutParameters syllable = new BoutParameters( p );
+
+            int pause = 0;
+            if (i < p.numberOfSyllables - 1) {
+                //If there's at least one more syllable coming, mutate the parameters a bit
+
+                //durationMs
+                double sdg = p.syllableDuration_mean * p.var_bw_syllables / 100.0;
+                double g = Sampler.nextGamma( random, p.syllableDuration_mean * p.syllableDuration_mean / (sdg * sdg),
+                                1 / (p.syllableDuration_mean / (sdg * sdg)) );
+
+                p.syllableDuration_mean = Math.max( AcousticParameters.MIN_MEAN_SYLLABLE_LENGTH,
+                                Math.min( AcousticParameters.MAX_MEAN_SYLLABLE_LENGTH, (int) g ) );
+
+                //pauseMs
+                sdg = p.pauseDuration_mean * p.var_bw_syllables / 100.0;
+                g = Sampler.nextGamma( random, p.pauseDuration_mean * p.pauseDuration_mean / (sdg * sdg), 1 / (p.pauseDuration_mean / (sdg * sdg)) );
+
+                p.pauseDuration_mean = Math.max( AcousticParameters.MIN_SYLLABLE_PAUSE, Math.min( AcousticParameters.MAX_SYLLABLE_PAUSE, (int) g ) );
+
+                //pitchStart
+                sdg = p.pitch_start * p.var_bw_syllables / 100.0;
+                g = Sampler.nextGamma( random, p.pitch_start * p.pitch_start / (sdg * sdg), 1 / (p.pitch_start / (sdg * sdg)) );
+
+                p.pitch_start = Math.max( AcousticParameters.MIN_PITCH, Math.min( AcousticParameters.MAX_PITCH, (int) g ) );
+
+                //pitchAnchor
+                sdg = p.pitch_anchor * p.var_bw_syllables / 100.0;
+                g = Sampler.nextGamma( random, p.pitch_anchor * p.pitch_anchor / (sdg * sdg), 1 / (p.pitch_anchor / (sdg * sdg)) );
+
+                p.pitch_anchor = Math.max( AcousticParameters.MIN_PITCH, Math.min( AcousticParameters.MAX_PITCH, (int) g ) );
+
+                //pitchEnd
+                sdg = p.pitch_end * p.var_bw_syllables / 100.0;
+                g = Sampler.nextGamma( random, p.pitch_end * p.pitch_end / (sdg * sdg), 1 / (p.pitch_end / (sdg * sdg)) );
+
+                p.pitch_end = Math.max( AcousticParameters.MIN_PITCH, Math.min( AcousticParameters.MAX_PITCH, (int) g ) );
+
+                //pitchEnd
+                sdg = p.pitch_anchor_location * p.var_bw_syllables / 100.0;
+                g = Sampler.nextGamma( random, p.pitch_anchor_location * p.pitch_anchor_location / (sdg * sdg), 1 / (p.pitch_anchor_location / (sdg * sdg)) );
+
+                p.pitch_anchor_location = Math.max( AcousticParameters.MIN_PITCH_ANCHOR_LOCATION,
+                                Math.min( AcousticParameters.MAX_PITCH_ANCHOR_LOCATION, (int) g ) );
+
+                pause = (int) Math.ceil( p.pauseDuration_mean * (p.sampleRate / 1000.0) );
+            }
+            syllables.add( new BoutPlan.Syllable( syllable, seed, pause ) );
+        }
+
+        return new BoutPlan( syllables, p.sampleRate );
+    }
+
+    private static List<BoutPlan> planBouts( List<BoutParameters> parameters ) {
+        final List<BoutPlan> plans = new ArrayList<>( parameters.size() );
+        for (final BoutParameters p : parameters) {
+            plans.add( planBout( p ) );
+        }
+        return plans;
+    }
+
+    /**
+     * Renders a planned bout, including the leading and trailing silence
+     *
+     * @param plan
+     * @param ctx must not be used by another thread at the same time
+     * @return
+     */
+    public static double[] renderBout( BoutPlan plan, SynthesisContext ctx ) {
+        return renderBout( plan, ctx, renderExecutor );
+    }
+
+    /**
+     * Renders one bout of a batch. The syllables are rendered on the current thread, as the batch already keeps the
+     * executor busy
+     */
+    private static void renderBout( BoutPlan plan, int index, BoutListener listener ) {
+        final double[] samples;
+        try {
+            samples = renderBout( plan, SynthesisContext.current(), null );
+        }
+        catch (final RuntimeException e) {
+            listener.failed( index, e );
+            return;
+        }
+        listener.rendered( index, samples );
+    }
+
+    private static double[] renderBout( BoutPlan plan, SynthesisContext ctx, Executor executor ) {
+        final List<BoutPlan.Syllable> planned = plan.getSyllables();
+        final double[][] syllables = renderSyllables( planned, ctx, executor );
+        final SynthesisProfile profile = ctx.getActiveProfile();
+        final long t = profile != null ? System.nanoTime() : 0;
+
+        final int silence = silencePoints( plan.getSampleRate() );
+        int length = 2 * silence;
+        for (int i = 0; i < syllables.length; i++) {
+            length += syllables[i].length + planned.get( i ).getPause();
+        }
+
+        //add some silence before and after the entire bout
+        final double[] sound = new double[length];
+        int offset = silence;
+        for (int i = 0; i < syllables.length; i++) {
+            System.arraycopy( syllables[i], 0, sound, offset, syllables[i].length );
+            offset += syllables[i].length + planned.get( i ).getPause();
+        }
+        if (profile != null) {
+            profile.record( Stage.ASSEMBLY, t, sound.length );
+        }
+
+        return sound;
+    }
+
+    /**
+     * Renders a batch of planned bouts, see {@link #renderBouts(List, BoutListener)}
+     *
+     * @param plans
+     * @return the bouts in the order of the plans
+     */
+    public static List<double[]> renderBouts( List<BoutPlan> plans ) {
+        final double[][] bouts = new double[plans.size()][];
+        renderBouts( plans, ( i, samples ) -> bouts[i] = samples );
+        return Arrays.asList( bouts );
+    }
+
+    /**
+     * Renders a batch of planned bouts on the {@link #setRenderExecutor(Executor) render executor}, one task per bout,
+     * longest first so that no long bout is left over at the end. Every bout is handed to the listener as soon as it is
+     * rendered. Returns once all bouts are rendered and delivered
+     *
+     * @param plans
+     * @param listener
+     */
+    public static void renderBouts( List<BoutPlan> plans, BoutListener listener ) {
+        final Integer[] order = new Integer[plans.size()];
+        final long[] lengths = new long[plans.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            lengths[i] = plans.get( i ).predictLength();
+        }
+        Arrays.sort( order, ( a, b ) -> Long.compare( lengths[b], lengths[a] ) );
+
+        final Executor executor = renderExecutor;
+        if (executor == null) {
+            for (final int i : order) {
+                renderBout( plans.get( i ), i, listener );
+            }
+            return;
+        }
+
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[order.length];
+        for (int i = 0; i < order.length; i++) {
+            final int index = order[i];
+            futures[i] = CompletableFuture.runAsync( () -> renderBout( plans.get( index ), index, listener ), executor );
+        }
+        try {
+            CompletableFuture.allOf( futures ).join();
+        }
+        catch (final CompletionException e) {
+            throw unwrap( e );
+        }
+    }
+
+    /**
+     * Renders a single planned syllable, without pause or silence. The result only depends on the syllable
+     *
+     * @param ctx must not be used by another thread at the same time
+     * @param s
+     * @return
+     */
+    public static double[] renderSyllable( SynthesisContext ctx, BoutPlan.Syllable s ) {
+        final BoutParameters p = s.getParameters();
+        final SynthesisProfile profile = ctx.getActiveProfile();
+        final long t = profile != null ? System.nanoTime() : 0;
+        final double[] pitchContour = getPitchContourSamples( p.syllableDuration_mean, p.pitch_start, p.pitch_anchor, p.pitch_end,
+                        p.pitch_anchor_location, p.femaleVoice, p.sampleRate );
+        if (profile != null) {
+            profile.record( Stage.PITCH_CONTOUR, t, pitchContour.length );
+        }
+        return generateSyllable( ctx, new RandomStream( s.getSeed() ), p, pitchContour );
+    }
+
+    /**
+     * Renders a syllable of a bout on the context of another thread, adding to the profile of the bout
+     */
+    private static double[] renderSyllable( SynthesisContext ctx, BoutPlan.Syllable s, SynthesisProfile profile ) {
+        final SynthesisProfile previous = ctx.getProfile();
+        ctx.setProfile( profile );
+        try {
+            return renderSyllable( ctx, s );
+        }
+        finally {
+            ctx.setProfile( previous );
+        }
+    }
+
+    /**
+     * Renders the given syllables in order. The first one is rendered on the calling thread with the given context,
+     * the others concurrently on the given executor with the context of the thread they run on and the profile of the
+     * given context. Every syllable is rendered from its own seed, so the result does not depend on the executor
+     */
+    private static double[][] renderSyllables( List<BoutPlan.Syllable> planned, SynthesisContext ctx, Executor executor ) {
+        final double[][] syllables = new double[planned.size()][];
+        if (executor == null || syllables.length < 2) {
+            for (int i = 0; i < syllables.length; i++) {
+                syllables[i] = renderSyllable( ctx, planned.get( i ) );
+            }
+            return syllables;
+        }
+
+        final SynthesisProfile profile = ctx.getProfile();
+        final List<CompletableFuture<double[]>> futures = new ArrayList<>( syllables.length - 1 );
+        for (int i = 1; i < syllables.length; i++) {
+            final BoutPlan.Syllable s = planned.get( i );
+            futures.add( CompletableFuture.supplyAsync( () -> renderSyllable( SynthesisContext.current(), s, profile ), executor ) );
+        }
+        try {
+            syllables[0] = renderSyllable( ctx, planned.get( 0 ) );
+            for (int i = 1; i < syllables.length; i++) {
+                syllables[i] = futures.get( i - 1 ).join();
+            }
+        }
+        catch (final CompletionException e) {
+            throw unwrap( e );
+        }
+        finally {
+            futures.forEach( f -> f.cancel( false ) );
+        }
+        return syllables;
+    }
+
+    /**
+     * Sets the executor the syllables of a bout and the bouts of a batch are rendered on, by default the common fork join pool.
+     * Null renders everything on the thread calling the generator
+     *
+     * @param executor
+     */
+    public static void setRenderExecutor( Executor executor ) {
+        renderExecutor = executor;
+    }
+
+    /**
+     * @return the number of zero samples added before and after every bout rendered at the given sample rate
+     */
+    static int silencePoints( int sampleRate ) {
+        return (int) (sampleRate * SILENCE_MS / 1000);
+    }
+
+    /**
+     * Streams a bout as 16 bit PCM in the given format, rendering syllable by syllable with a context of its own while
+     * the stream is read. See {@link BoutInputStream} for how the stream is normalised
+     *
+     * @param p
+     * @param format must be 16 bit signed little endian mono, at the sample rate of the bout
+     * @return a stream of unspecified length
+     */
+    public static AudioInputStream streamBout( BoutParameters p, AudioFormat format ) {
+        return streamBout( p, format, new SynthesisContext() );
+    }
+
+    /**
+     * Streams a bout with the random numbers of the given stream, ignoring {@link BoutParameters#seed}.
+     * The bout is planned right away, so the caller may continue to use the stream
+     *
+     * @param p
+     * @param format must be 16 bit signed little endian mono, at the sample rate of the bout
+     * @param random
+     * @return a stream of unspecified length
+     */
+    public static AudioInputStream streamBout( BoutParameters p, AudioFormat format, RandomStream random ) {
+        return streamBout( p, format, new SynthesisContext(), random );
+    }
+
+    /**
+     * Streams a bout rendered with the given context, which the stream uses until it is read to the end
+     *
+     * @param p
+     * @param format must be 16 bit signed little endian mono, at the sample rate of the bout
+     * @param ctx must not be used by another thread while the stream is read
+     * @return a stream of unspecified length
+     */
+    public static AudioInputStream streamBout( BoutParameters p, AudioFormat format, SynthesisContext ctx ) {
+        return streamBout( p, format, ctx, boutRandom( p, ctx ) );
+    }
+
+    private static AudioInputStream streamBout( BoutParameters p, AudioFormat format, SynthesisContext ctx, RandomStream random ) {
+        if (format.getChannels() != 1 || format.getSampleSizeInBits() != 16 || format.isBigEndian()
+                        || format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED) {
+            throw new IllegalArgumentException( "Only 16 bit signed little endian mono is supported, not " + format );
+        }
+        if (format.getSampleRate() != p.sampleRate) {
+            throw new IllegalArgumentException( "The format must have the sample rate of the bout, " + p.sampleRate + ", not " + format.getSampleRate() );
+        }
+        return new AudioInputStream( new BoutInputStream( planBout( p, random ), ctx ), format, AudioSystem.NOT_SPECIFIED );
+    }
+
+    private static double[] toArray( List<Double> samples ) {
+        final double[] ret = new double[samples.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = samples.get( i );
+        }
+        return ret;
+    }
+
+    /**
+     * Smooths equally spaced values with a robust Loess fit, like commons-math's LoessInterpolator with a bandwidth of
+     * {@link #LOESS_BANDWIDTH} and {@link #LOESS_ROBUSTNESS_ITERATIONS} robustness iterations, and gives the same values.
+     * The distance weights are cached per number of values
+     */
+    private static double[] smoothLoess( double[] y ) {
+        final int n = y.length;
+        final double[] weights = LOESS_WEIGHTS.computeIfAbsent( n, Generator::computeLoessWeights );
+        final double[] res = new double[n];
+        final double[] residuals = new double[n];
+        final double[] sortedResiduals = new double[n];
+        final double[] robustnessWeights = new double[n];
+        Arrays.fill( robustnessWeights, 1 );
+
+        for (int iter = 0; iter <= LOESS_ROBUSTNESS_ITERATIONS; iter++) {
+            for (int i = 0; i < n; i++) {
+                // weighted linear regression over the window of point i
+                double sumWeights = 0;
+                double sumX = 0;
+                double sumXSquared = 0;
+                double sumY = 0;
+                double sumXY = 0;
+                for (int k = 0; k < n; k++) {
+                    final double w = weights[i * n + k] * robustnessWeights[k];
+                    final double xkw = k * w;
+                    sumWeights += w;
+                    sumX += xkw;
+                    sumXSquared += k * xkw;
+                    sumY += y[k] * w;
+                    sumXY += y[k] * xkw;
                 }
+                final double meanX = sumX / sumWeights;
+                final double meanY = sumY / sumWeights;
+                final double meanXY = sumXY / sumWeights;
+                final double meanXSquared = sumXSquared / sumWeights;
+                final double beta = Math.sqrt( Math.abs( meanXSquared - meanX * meanX ) ) < LOESS_ACCURACY ? 0
+                                : (meanXY - meanX * meanY) / (meanXSquared - meanX * meanX);
+                res[i] = beta * i + meanY - beta * meanX;
+                residuals[i] = Math.abs( y[i] - res[i] );
+            }
+            if (iter == LOESS_ROBUSTNESS_ITERATIONS) {
                 break;
-            case 1:
-                while (myseq.size() > len) {
-                    myseq.remove( myseq.size() - 1 );
+            }
+
+            // points with large residuals get less weight in the next iteration
+            System.arraycopy( residuals, 0, sortedResiduals, 0, n );
+            Arrays.sort( sortedResiduals );
+            final double medianResidual = sortedResiduals[n / 2];
+            if (Math.abs( medianResidual ) < LOESS_ACCURACY) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                final double arg = residuals[i] / (6 * medianResidual);
+                if (arg >= 1) {
+                    robustnessWeights[i] = 0;
                 }
-                while (myseq.size() < len) {
-                    myseq.add( 0.0 );
+                else {
+                    final double w = 1 - arg * arg;
+                    robustnessWeights[i] = w * w;
                 }
-                break;
-            default:
-                throw new IllegalStateException();
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Wraps a sample buffer into a {@link List} for callers of the List-based API. The list is backed by the buffer.
+     *
+     * @param samples
+     * @return
+     */
+    public static List<Double> toList( double[] samples ) {
+        return new SampleList( samples );
+    }
+
+    private static RuntimeException unwrap( CompletionException e ) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
         }
-        return myseq;
+        return e;
     }
 }
@@ -0,0 +1,102 @@
+package se.lu.lucs.sound;
+
+/**
+ * One glottal cycle, sum over h of h^(-rolloff / 10) * sin(2 * pi * h * x), precomputed as a wavetable. Without
+ * per-harmonic modulation this is exactly what {@link OscillatorBank} computes, but reading the table costs the same
+ * for every pitch instead of growing with the number of harmonics.
+ *
+ * To stay band-limited the table is mip-mapped: level k only contains the harmonics below the frequency ceiling for
+ * a pitch of MIN_PITCH * 2^(k / LEVELS_PER_OCTAVE). Rendering picks the level per block of
+ * {@link OscillatorBank#BLOCK_SIZE} samples from the highest instantaneous pitch in that block, so at most the top
+ * third of an octave below the ceiling is lost compared to additive synthesis. Tables are interpolated linearly.
+ *
+ * Instances are immutable and can be shared between threads. The tables for the most recently used rolloffs are kept.
+ */
+public class GlottalWavetable {
+    public static final int TABLE_LENGTH = 4096;
+    public static final int LEVELS_PER_OCTAVE = 3;
+
+    private final static LruCache<Long, GlottalWavetable> TABLES = new LruCache<>( 16 );
+
+    /**
+     * Returns a shared wavetable for the given rolloff and frequency ceiling
+     */
+    public static GlottalWavetable forRolloff( int rolloff, int maxFrequency ) {
+        return TABLES.computeIfAbsent( (long) rolloff << 32 | maxFrequency, k -> new GlottalWavetable( rolloff, maxFrequency ) );
+    }
+
+    private final double[][] levels;
+
+    /**
+     * @param rolloff the rolloff as in {@link OscillatorBank#rolloffGains(int, double)}
+     * @param maxFrequency the highest frequency any level may contain, in Hz
+     */
+    public GlottalWavetable( int rolloff, int maxFrequency ) {
+        if (maxFrequency < AcousticParameters.MIN_PITCH) {
+            throw new IllegalArgumentException( "frequency ceiling must be at least " + AcousticParameters.MIN_PITCH + " Hz, not " + maxFrequency );
+        }
+        final RealFft fft = RealFft.forLength( TABLE_LENGTH );
+        final double[] gains = OscillatorBank.rolloffGains( TABLE_LENGTH / 2 - 1, rolloff );
+        final double[] re = new double[TABLE_LENGTH / 2];
+        final double[] im = new double[TABLE_LENGTH / 2];
+
+        final int nLevels = getLevel( maxFrequency ) + 1;
+        levels = new double[nLevels][];
+        for (int k = 0; k < nLevels; k++) {
+            final double topPitch = AcousticParameters.MIN_PITCH * Math.pow( 2, k / (double) LEVELS_PER_OCTAVE );
+            final int nHarmonics = (int) Math.max( 1, Math.min( gains.length, Math.floor( maxFrequency / topPitch ) ) );
+
+            // a sine of amplitude g in bin h has the spectrum -i * g * n / 2
+            for (int h = 0; h < re.length; h++) {
+                re[h] = 0;
+                im[h] = 0 < h && h <= nHarmonics ? -gains[h - 1] * TABLE_LENGTH / 2 : 0;
+            }
+            final double[] table = new double[TABLE_LENGTH + 1];
+            fft.inverse( re, im, table );
+            table[TABLE_LENGTH] = table[0];
+            levels[k] = table;
+        }
+    }
+
+    /**
+     * @return the lowest level that is band-limited for the given pitch, not clamped to the existing levels
+     */
+    private int getLevel( double pitch ) {
+        if (pitch <= AcousticParameters.MIN_PITCH) {
+            return 0;
+        }
+        return (int) Math.ceil( LEVELS_PER_OCTAVE * Math.log( pitch / AcousticParameters.MIN_PITCH ) / Math.log( 2 ) - 1e-9 );
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Adds the glottal cycles to out
+     *
+     * @param phase the phase of the fundamental in cycles, per sample
+     * @param pitch the instantaneous frequency of the fundamental in Hz, per sample
+     * @param length the number of samples to synthesise
+     * @param out receives the signal
+     */
+    public void render( double[] phase, double[] pitch, int length, double[] out ) {
+        for (int start = 0; start < length; start += OscillatorBank.BLOCK_SIZE) {
+            final int n = Math.min( OscillatorBank.BLOCK_SIZE, length - start );
+
+            double maxPitch = 0;
+            for (int i = 0; i < n; i++) {
+                maxPitch = Math.max( maxPitch, pitch[start + i] );
+            }
+            final double[] table = levels[Math.min( levels.length - 1, getLevel( maxPitch ) )];
+
+            for (int i = 0; i < n; i++) {
+                final double x = phase[start + i];
+                final double position = (x - Math.floor( x )) * TABLE_LENGTH;
+                final int index = Math.min( TABLE_LENGTH - 1, (int) position );
+                final double fraction = position - index;
+                out[start + i] += table[index] + fraction * (table[index + 1] - table[index]);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package se.lu.lucs.sound;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The element-wise and reduction loops the synthesis spends most of its time in. The implementation is chosen once,
+ * when the class is initialised: the first provider registered with {@link ServiceLoader} that loads and reports itself
+ * {@link #isSupported() supported} is used, otherwise the {@link ScalarKernels}. A provider whose classes cannot be linked,
+ * e.g. the Vector API kernels of the soundSynth-vector module on a JDK started without
+ * <code>--add-modules jdk.incubator.vector</code>, is skipped. Setting the system property {@value #PROPERTY} to
+ * <code>scalar</code> forces the scalar kernels.
+ *
+ * Element-wise kernels must give exactly the results of the scalar loops, i.e. multiply and add separately instead of
+ * using fused multiply-adds, so a bout renders to the same samples with every implementation. Only reductions may
+ * sum in a different order. The single precision overloads serve {@link BoutParameters#singlePrecision} renders.
+ */
+public abstract class Kernels {
+    public static final String PROPERTY = "se.lu.lucs.sound.kernels";
+
+    private static final Kernels INSTANCE = load();
+
+    /**
+     * @return the kernels selected at startup
+     */
+    public static Kernels get() {
+        return INSTANCE;
+    }
+
+    private static Kernels load() {
+        if ("scalar".equalsIgnoreCase( System.getProperty( PROPERTY ) )) {
+            return new ScalarKernels();
+        }
+
+        final Iterator<Kernels> providers = ServiceLoader.load( Kernels.class, Kernels.class.getClassLoader() ).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                final Kernels k = providers.next();
+                if (k.isSupported()) {
+                    return k;
+                }
+            }
+            catch (ServiceConfigurationError | LinkageError e) {
+                // provider not available on this JDK, try the next one
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * Pearson's correlation coefficient of the first n elements of x and y
+     *
+     * @return NaN if either has no variance
+     */
+    public abstract double correlation( double[] x, double[] y, int n );
+
+    /**
+     * @return a short name for logging and benchmarks
+     */
+    public abstract String getName();
+
+    /**
+     * One step of the harmonic recurrence of the {@link OscillatorBank}, for i in [0, n):
+     * out[offset + i] += gain * current[i], then current[i] becomes twoCos[i] * current[i] - previous[i] and previous[i] the
+     * old current[i]
+     */
+    public abstract void harmonic( double gain, double[] twoCos, double[] previous, double[] current, double[] out, int offset, int n );
+
+    /**
+     * @return whether this implementation can run, and is expected to be faster than the scalar loops, on this machine
+     */
+    public boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * a[aOffset + i] *= b[bOffset + i] for i in [0, n)
+     */
+    public abstract void multiply( double[] a, int aOffset, double[] b, int bOffset, int n );
+
+    public abstract void multiply( float[] a, int aOffset, float[] b, int bOffset, int n );
+
+    /**
+     * out[offset + i] += a[i] * b[i] for i in [0, n)
+     */
+    public abstract void multiplyAdd( double[] a, double[] b, double[] out, int offset, int n );
+
+    public abstract void multiplyAdd( float[] a, float[] b, float[] out, int offset, int n );
+
+    /**
+     * a[i] *= factor for i in [from, to)
+     */
+    public abstract void scale( double[] a, int from, int to, double factor );
+
+    public abstract void scale( float[] a, int from, int to, float factor );
+}
@@ -0,0 +1,81 @@
+package se.lu.lucs.sound;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache that evicts the least recently used entry once it is full,
+ * and counts hits and misses.
+ *
+ * Values are computed outside of the lock, so a slow computation does not block other threads. Two threads missing the
+ * same key at the same time may therefore both compute the value; the value stored last wins.
+ *
+ * @param <K> key type, must implement equals and hashCode
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+    private final int capacity;
+    private final LinkedHashMap<K, V> map;
+    private long hits;
+    private long misses;
+
+    public LruCache( int capacity ) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException( "capacity must be positive, not " + capacity );
+        }
+        this.capacity = capacity;
+        map = new LinkedHashMap<K, V>( 16, .75f, true ) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, V> eldest ) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * Returns the value cached for key, computing and caching it on a miss
+     */
+    public V computeIfAbsent( K key, Function<? super K, ? extends V> mappingFunction ) {
+        synchronized (this) {
+            final V value = map.get( key );
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            misses++;
+        }
+        final V value = mappingFunction.apply( key );
+        synchronized (this) {
+            map.put( key, value );
+        }
+        return value;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LruCache [size=" + map.size() + ", capacity=" + capacity + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+}
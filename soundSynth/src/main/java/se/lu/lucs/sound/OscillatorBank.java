@@ -0,0 +1,90 @@
+package se.lu.lucs.sound;
+
+/**
+ * Additive synthesis of a harmonic tone: sum over h of gain[h] * sin(2 * pi * h * phase), where phase is
+ * the integrated pitch contour in cycles.
+ *
+ * Instead of evaluating sin() for every harmonic and sample, only sin and cos of the fundamental are computed
+ * per sample. Higher harmonics follow from the Chebyshev recurrence sin((h+1)x) = 2cos(x)sin(hx) - sin((h-1)x).
+ * The signal is processed in blocks of {@link #BLOCK_SIZE} samples, with the harmonics in the outer and the
+ * samples of the block in the inner loop, so the recurrence state of a block stays in the cache and the inner
+ * loop has no dependencies between iterations.
+ *
+ * In band-limited mode the number of harmonics is chosen per block from the highest instantaneous pitch in that block,
+ * so harmonics are only synthesised while they are below the given frequency limit.
+ *
+ * Tolerance: the recurrence loses about one bit per doubling of the harmonic number. With the ~265 harmonics
+ * of a 75 Hz voice the deviation from evaluating sin() directly stays below 1e-9 of the sum of the gains, which
+ * is smaller than the error of sin() itself for the large arguments of long syllables, and far below 16 bit PCM resolution.
+ */
+public class OscillatorBank {
+    public static final int BLOCK_SIZE = 256;
+
+    /**
+     * @return the linear amplitude of harmonics 1 to nHarmonics for the given rolloff (in dB per octave / 10),
+     * i.e. h^(-rolloff / 10). Element 0 holds the gain of the fundamental
+     */
+    public static double[] rolloffGains( int nHarmonics, double rolloff ) {
+        final double[] gains = new double[Math.max( 0, nHarmonics )];
+        for (int h = 1; h <= gains.length; h++) {
+            gains[h - 1] = Math.pow( h, -rolloff / 10.0 );
+        }
+        return gains;
+    }
+
+    /**
+     * Adds the harmonics to out
+     *
+     * @param phase the phase of the fundamental in cycles, per sample
+     * @param length the number of samples to synthesise
+     * @param gains the gain per harmonic, see {@link #rolloffGains(int, double)}
+     * @param nHarmonics the number of harmonics to synthesise
+     * @param out receives the sum of the harmonics
+     */
+    public static void synthesize( double[] phase, int length, double[] gains, int nHarmonics, double[] out ) {
+        synthesize( phase, null, Double.POSITIVE_INFINITY, length, gains, nHarmonics, out );
+    }
+
+    /**
+     * Adds the harmonics to out, dropping every harmonic that exceeds maxFrequency anywhere within a block
+     *
+     * @param phase the phase of the fundamental in cycles, per sample
+     * @param pitch the instantaneous frequency of the fundamental in Hz, per sample. If null, all nHarmonics are synthesised everywhere
+     * @param maxFrequency the highest frequency to synthesise, in Hz
+     * @param length the number of samples to synthesise
+     * @param gains the gain per harmonic, see {@link #rolloffGains(int, double)}
+     * @param nHarmonics the maximum number of harmonics to synthesise
+     * @param out receives the sum of the harmonics
+     */
+    public static void synthesize( double[] phase, double[] pitch, double maxFrequency, int length, double[] gains, int nHarmonics, double[] out ) {
+        final double[] twoCos = new double[BLOCK_SIZE];
+        final double[] previous = new double[BLOCK_SIZE];
+        final double[] current = new double[BLOCK_SIZE];
+        final Kernels kernels = Kernels.get();
+
+        for (int start = 0; start < length; start += BLOCK_SIZE) {
+            final int n = Math.min( BLOCK_SIZE, length - start );
+
+            int blockHarmonics = nHarmonics;
+            if (pitch != null) {
+                double maxPitch = 0;
+                for (int i = 0; i < n; i++) {
+                    maxPitch = Math.max( maxPitch, pitch[start + i] );
+                }
+                blockHarmonics = (int) Math.min( nHarmonics, Math.floor( maxFrequency / maxPitch ) );
+            }
+
+            for (int i = 0; i < n; i++) {
+                final double x = phase[start + i];
+                final double theta = 2 * Math.PI * (x - Math.floor( x ));
+                twoCos[i] = 2 * Math.cos( theta );
+                previous[i] = 0; // sin(0 * theta)
+                current[i] = Math.sin( theta );
+            }
+
+            for (int h = 0; h < blockHarmonics; h++) {
+                kernels.harmonic( gains[h], twoCos, previous, current, out, start, n );
+            }
+        }
+    }
+}
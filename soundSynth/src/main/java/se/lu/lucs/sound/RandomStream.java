@@ -0,0 +1,71 @@
+package se.lu.lucs.sound;
+
+import java.util.SplittableRandom;
+
+import org.apache.commons.math3.random.AbstractRandomGenerator;
+
+/**
+ * A seedable, splittable stream of random numbers, based on {@link SplittableRandom}. It implements the commons math
+ * {@link org.apache.commons.math3.random.RandomGenerator}, so it can drive the distributions used by the generator and
+ * the genetic operators.
+ *
+ * A stream is not thread-safe, but it is cheap to {@link #split()} off an independent stream for every thread or task.
+ * Splitting is deterministic: the same seed and the same sequence of calls always give the same numbers, no matter on
+ * which threads the split streams are used later.
+ */
+public class RandomStream extends AbstractRandomGenerator {
+    private SplittableRandom random;
+
+    /**
+     * Creates a stream with a seed that differs between calls
+     */
+    public RandomStream() {
+        this( new SplittableRandom() );
+    }
+
+    public RandomStream( long seed ) {
+        this( new SplittableRandom( seed ) );
+    }
+
+    private RandomStream( SplittableRandom random ) {
+        this.random = random;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return random.nextInt() < 0;
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public int nextInt() {
+        return random.nextInt();
+    }
+
+    @Override
+    public int nextInt( int n ) {
+        return random.nextInt( n );
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public void setSeed( long seed ) {
+        random = new SplittableRandom( seed );
+        clear();
+    }
+
+    /**
+     * Returns a new stream that is statistically independent of this one, and advances this stream
+     */
+    public RandomStream split() {
+        return new RandomStream( random.split() );
+    }
+}
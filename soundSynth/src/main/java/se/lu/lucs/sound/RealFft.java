@@ -0,0 +1,253 @@
+package se.lu.lucs.sound;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fast fourier transform of real signals, in double or single precision. A real signal of length n is packed into a complex signal of
+ * length n / 2 (even samples as real, odd samples as imaginary part), transformed with a half length {@link Fft}
+ * and then split into the spectrum of the real signal. This needs about half the work and memory of a complex
+ * transform of the same length.
+ *
+ * Since the spectrum of a real signal is conjugate symmetric only the lower half is stored, in the packed format
+ * also used by FFTPACK: for 0 < k < n / 2, re[k] and im[k] hold bin k. Bin 0 (DC) and bin n / 2 (Nyquist) are both
+ * real, so re[0] holds the DC and im[0] the Nyquist bin.
+ *
+ * Instances only hold precomputed tables and can be shared between threads; all transforms work in place on the
+ * arrays supplied by the caller.
+ */
+public class RealFft {
+    private final static Map<Integer, RealFft> PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a shared plan for the given transform length
+     */
+    public static RealFft forLength( int length ) {
+        return PLANS.computeIfAbsent( length, RealFft::new );
+    }
+
+    private final int length;
+    private final Fft fft;
+    private final double[] cos;
+    private final double[] sin;
+    private final float[] cosF;
+    private final float[] sinF;
+
+    /**
+     * @param length the length of the real signal, must be a power of two and at least 4
+     */
+    public RealFft( int length ) {
+        if (length < 4) {
+            throw new IllegalArgumentException( "transform length must be at least 4, not " + length );
+        }
+        this.length = length;
+        fft = new Fft( length / 2 );
+
+        cos = new double[length / 4 + 1];
+        sin = new double[length / 4 + 1];
+        for (int k = 0; k < cos.length; k++) {
+            final double phi = 2 * Math.PI * k / length;
+            cos[k] = Math.cos( phi );
+            sin[k] = Math.sin( phi );
+        }
+        cosF = new float[cos.length];
+        sinF = new float[sin.length];
+        for (int k = 0; k < cos.length; k++) {
+            cosF[k] = (float) cos[k];
+            sinF[k] = (float) sin[k];
+        }
+    }
+
+    /**
+     * Transforms length samples of x, starting at offset, into the packed half spectrum
+     *
+     * @param x the real signal
+     * @param offset index of the first sample to transform
+     * @param re receives the real parts, length / 2 elements
+     * @param im receives the imaginary parts, length / 2 elements
+     */
+    public void forward( double[] x, int offset, double[] re, double[] im ) {
+        final int half = length / 2;
+        for (int k = 0; k < half; k++) {
+            re[k] = x[offset + 2 * k];
+            im[k] = x[offset + 2 * k + 1];
+        }
+        fft.forward( re, im );
+
+        final double z0r = re[0];
+        final double z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = z0r - z0i;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int m = half - k;
+            // a = Z[k], b = conj(Z[m])
+            final double ar = re[k];
+            final double ai = im[k];
+            final double br = re[m];
+            final double bi = -im[m];
+
+            // spectrum of the even samples
+            final double er = (ar + br) / 2;
+            final double ei = (ai + bi) / 2;
+
+            // spectrum of the odd samples, -i(a - b) / 2, rotated by exp(-2 pi i k / n)
+            final double or = (ai - bi) / 2;
+            final double oi = -(ar - br) / 2;
+            final double wor = cos[k] * or + sin[k] * oi;
+            final double woi = cos[k] * oi - sin[k] * or;
+
+            // X[k] = E + WO, X[m] = conj(E - WO)
+            re[k] = er + wor;
+            im[k] = ei + woi;
+            re[m] = er - wor;
+            im[m] = -(ei - woi);
+        }
+    }
+
+    /**
+     * Single precision version of {@link #forward(double[], int, double[], double[])}
+     *
+     * @param x the real signal
+     * @param offset index of the first sample to transform
+     * @param re receives the real parts, length / 2 elements
+     * @param im receives the imaginary parts, length / 2 elements
+     */
+    public void forward( float[] x, int offset, float[] re, float[] im ) {
+        final int half = length / 2;
+        for (int k = 0; k < half; k++) {
+            re[k] = x[offset + 2 * k];
+            im[k] = x[offset + 2 * k + 1];
+        }
+        fft.forward( re, im );
+
+        final float z0r = re[0];
+        final float z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = z0r - z0i;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int m = half - k;
+            // a = Z[k], b = conj(Z[m])
+            final float ar = re[k];
+            final float ai = im[k];
+            final float br = re[m];
+            final float bi = -im[m];
+
+            // spectrum of the even samples
+            final float er = (ar + br) / 2;
+            final float ei = (ai + bi) / 2;
+
+            // spectrum of the odd samples, -i(a - b) / 2, rotated by exp(-2 pi i k / n)
+            final float or = (ai - bi) / 2;
+            final float oi = -(ar - br) / 2;
+            final float wor = cosF[k] * or + sinF[k] * oi;
+            final float woi = cosF[k] * oi - sinF[k] * or;
+
+            // X[k] = E + WO, X[m] = conj(E - WO)
+            re[k] = er + wor;
+            im[k] = ei + woi;
+            re[m] = er - wor;
+            im[m] = -(ei - woi);
+        }
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Transforms a packed half spectrum back into a real signal, normalised by 1 / length.
+     * The content of re and im is destroyed.
+     *
+     * @param re real parts of the packed half spectrum, length / 2 elements
+     * @param im imaginary parts of the packed half spectrum, length / 2 elements
+     * @param x receives the real signal, length elements
+     */
+    public void inverse( double[] re, double[] im, double[] x ) {
+        final int half = length / 2;
+
+        final double x0 = re[0];
+        final double xn = im[0];
+        re[0] = (x0 + xn) / 2;
+        im[0] = (x0 - xn) / 2;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int m = half - k;
+            // a = X[k], b = conj(X[m])
+            final double ar = re[k];
+            final double ai = im[k];
+            final double br = re[m];
+            final double bi = -im[m];
+
+            final double er = (ar + br) / 2;
+            final double ei = (ai + bi) / 2;
+
+            // WO = (a - b) / 2, O = WO * exp(2 pi i k / n)
+            final double wor = (ar - br) / 2;
+            final double woi = (ai - bi) / 2;
+            final double or = cos[k] * wor - sin[k] * woi;
+            final double oi = cos[k] * woi + sin[k] * wor;
+
+            // Z[k] = E + iO, Z[m] = conj(E) + i conj(O)
+            re[k] = er - oi;
+            im[k] = ei + or;
+            re[m] = er + oi;
+            im[m] = -ei + or;
+        }
+
+        fft.inverse( re, im );
+
+        for (int k = 0; k < half; k++) {
+            x[2 * k] = re[k];
+            x[2 * k + 1] = im[k];
+        }
+    }
+
+    /**
+     * Single precision version of {@link #inverse(double[], double[], double[])}
+     *
+     * @param re real parts of the packed half spectrum, length / 2 elements
+     * @param im imaginary parts of the packed half spectrum, length / 2 elements
+     * @param x receives the real signal, length elements
+     */
+    public void inverse( float[] re, float[] im, float[] x ) {
+        final int half = length / 2;
+
+        final float x0 = re[0];
+        final float xn = im[0];
+        re[0] = (x0 + xn) / 2;
+        im[0] = (x0 - xn) / 2;
+
+        for (int k = 1; k <= half / 2; k++) {
+            final int m = half - k;
+            // a = X[k], b = conj(X[m])
+            final float ar = re[k];
+            final float ai = im[k];
+            final float br = re[m];
+            final float bi = -im[m];
+
+            final float er = (ar + br) / 2;
+            final float ei = (ai + bi) / 2;
+
+            // WO = (a - b) / 2, O = WO * exp(2 pi i k / n)
+            final float wor = (ar - br) / 2;
+            final float woi = (ai - bi) / 2;
+            final float or = cosF[k] * wor - sinF[k] * woi;
+            final float oi = cosF[k] * woi + sinF[k] * wor;
+
+            // Z[k] = E + iO, Z[m] = conj(E) + i conj(O)
+            re[k] = er - oi;
+            im[k] = ei + or;
+            re[m] = er + oi;
+            im[m] = -ei + or;
+        }
+
+        fft.inverse( re, im );
+
+        for (int k = 0; k < half; k++) {
+            x[2 * k] = re[k];
+            x[2 * k + 1] = im[k];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package se.lu.lucs.sound;
+
+import se.lu.lucs.sound.BoutParameters.SynthesisEngine;
+
+/**
+ * How faithfully a bout is rendered. DRAFT trades fidelity for speed, for previews and for screening many candidates:
+ * it renders at a lower sample rate with fewer harmonics, a shorter STFT window with less overlap, a coarser random
+ * spectrum, the wavetable engine, single precision filtering and spectral breathing. Durations, pitch contours and formants stay the same,
+ * so a draft sounds like a duller version of the final bout. FINAL renders the parameters as they are.
+ *
+ * Qualities are applied by deriving a copy of the parameters, so the original parameters can always be re-rendered in
+ * FINAL quality, e.g. once a draft has been chosen.
+ */
+public enum RenderQuality {
+    DRAFT, FINAL;
+
+    public static final int DRAFT_SAMPLE_RATE = 22050;
+    public static final int DRAFT_MAX_HARMONIC_FREQUENCY = 8000;
+    public static final int DRAFT_MAX_OVERLAP = 50;
+    public static final int DRAFT_MIN_WINDOW_LENGTH = 256;
+    public static final int DRAFT_MIN_LEN_RAR_FILTER = 8;
+
+    /**
+     * @param p is not modified
+     * @return a copy of the parameters, adjusted to this quality
+     */
+    public BoutParameters derive( BoutParameters p ) {
+        final BoutParameters derived = new BoutParameters( p );
+        if (this == FINAL) {
+            return derived;
+        }
+
+        derived.sampleRate = Math.min( p.sampleRate, DRAFT_SAMPLE_RATE );
+        // keep the duration of the window, which needs fewer points at the lower rate
+        final int windowLength = (int) (p.windowLength_points * (double) derived.sampleRate / p.sampleRate);
+        derived.windowLength_points = Math.max( DRAFT_MIN_WINDOW_LENGTH, Integer.highestOneBit( windowLength ) );
+        derived.overlap = Math.min( p.overlap, DRAFT_MAX_OVERLAP );
+        derived.maxHarmonicFrequency = Math.min( p.maxHarmonicFrequency, DRAFT_MAX_HARMONIC_FREQUENCY );
+        derived.lenRarFilter = Math.max( Math.min( p.lenRarFilter, DRAFT_MIN_LEN_RAR_FILTER ), p.lenRarFilter / 4 );
+        derived.synthesisEngine = SynthesisEngine.WAVETABLE;
+        derived.singlePrecision = true;
+        derived.spectralBreathing = true;
+        return derived;
+    }
+}
@@ -0,0 +1,49 @@
+package se.lu.lucs.sound;
+
+/**
+ * Converts signals between sample rates by band-limited interpolation: every output sample is the sum of the input samples
+ * around it weighted with a hann windowed sinc, whose cutoff is the lower of the two Nyquist frequencies, so downsampling
+ * does not alias.
+ */
+public class Resampler {
+    /**
+     * Zero crossings of the sinc on either side of a sample, at the lower of the two rates
+     */
+    private static final int ZERO_CROSSINGS = 16;
+
+    /**
+     * @param samples
+     * @param from the sample rate of the samples
+     * @param to the sample rate of the result
+     * @return the samples at the new rate, a copy if both rates are the same
+     */
+    public static double[] resample( double[] samples, int from, int to ) {
+        if (from <= 0 || to <= 0) {
+            throw new IllegalArgumentException( "sample rates must be > 0" );
+        }
+        if (from == to) {
+            return samples.clone();
+        }
+
+        final double step = (double) from / to;
+        // cutoff relative to the input Nyquist frequency, and the half width of the kernel in input samples
+        final double cutoff = Math.min( 1, 1 / step );
+        final double halfWidth = ZERO_CROSSINGS / cutoff;
+        final double[] out = new double[(int) ((long) samples.length * to / from)];
+        for (int j = 0; j < out.length; j++) {
+            final double t = j * step;
+            final int first = Math.max( 0, (int) Math.ceil( t - halfWidth ) );
+            final int last = Math.min( samples.length - 1, (int) Math.floor( t + halfWidth ) );
+            double sum = 0;
+            for (int k = first; k <= last; k++) {
+                final double d = t - k;
+                final double x = Math.PI * d * cutoff;
+                final double sinc = x == 0 ? 1 : Math.sin( x ) / x;
+                final double window = .5 + .5 * Math.cos( Math.PI * d / halfWidth );
+                sum += samples[k] * sinc * window;
+            }
+            out[j] = sum * cutoff;
+        }
+        return out;
+    }
+}
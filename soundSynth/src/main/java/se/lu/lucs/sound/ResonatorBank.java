@@ -0,0 +1,351 @@
+package se.lu.lucs.sound;
+
+/**
+ * Realises a spectral envelope in the time domain, as a cascade of second-order IIR sections: a tilt made of up to
+ * {@link #MAX_TILT_STAGES} one-pole lowpasses, followed by up to {@link #MAX_SECTIONS} peaking resonators. Filtering costs
+ * a few multiply-adds per sample and section, independent of any window length, which makes it much cheaper than
+ * {@link StftEngine} for short signals.
+ *
+ * The bank is fitted to the magnitude of an envelope as produced for the STFT, in dB on a grid of up to {@link #GRID}
+ * frequencies. First the tilt that best matches the envelope is chosen; then resonators are placed greedily at the largest
+ * remaining deviation, with the deviation as gain and the width at half the deviation as bandwidth, until the envelope is
+ * matched within {@link #TOLERANCE_DB}. Only frequencies within {@link #DYNAMIC_RANGE_DB} of the envelope's maximum are
+ * fitted, since anything below that vanishes in 16 bit PCM. Unlike the STFT the bank is minimum phase, so the waveform
+ * differs while the spectrum matches.
+ */
+public class ResonatorBank {
+    public static final int MAX_TILT_STAGES = 3;
+    public static final int MAX_SECTIONS = 16;
+    public static final double TOLERANCE_DB = 1;
+    public static final double DYNAMIC_RANGE_DB = 60;
+    public static final int GRID = 128;
+    public static final int FLOOR_GRID = 16;
+
+    /**
+     * Number of tilt cutoff frequencies tried, spaced by half octaves down from the Nyquist frequency
+     */
+    private static final int TILT_CUTOFFS = 16;
+    private static final double MIN_Q = .3;
+    private static final double MAX_Q = 30;
+    private static final int REFINEMENTS = 1;
+
+    /**
+     * Adds sign times the response of a section to the residual
+     */
+    private static void accumulate( double[] residual, double[] response, int sign ) {
+        for (int g = 0; g < residual.length; g++) {
+            residual[g] += sign * response[g];
+        }
+    }
+
+    /**
+     * @return the response of a biquad in dB, for the given cos(w) and cos(2w)
+     */
+    private static double biquadDb( double b0, double b1, double b2, double a1, double a2, double cos1, double cos2 ) {
+        final double num = b0 * b0 + b1 * b1 + b2 * b2 + 2 * (b0 * b1 + b1 * b2) * cos1 + 2 * b0 * b2 * cos2;
+        final double den = 1 + a1 * a1 + a2 * a2 + 2 * (a1 + a1 * a2) * cos1 + 2 * a2 * cos2;
+        return 10 * Math.log10( num / den );
+    }
+
+    /**
+     * @return the deviation of the response from the target at grid point i. Positive if the response is too low, which
+     * is no deviation at the floor
+     */
+    private static double deviation( double[] residual, double offset, boolean[] floor, int i ) {
+        final double d = residual[i] - offset;
+        return floor[i] ? Math.min( d, 0 ) : d;
+    }
+
+    /**
+     * Fits a bank to a spectral envelope
+     *
+     * @param filter linear gain per frequency bin, bin i at i * sampleRate / windowLength Hz, as for {@link StftEngine#filter(double[], int, double[], double[])}
+     * @param windowLength the window length the envelope was computed for
+     * @param sampleRate
+     */
+    public static ResonatorBank fit( double[] filter, int windowLength, int sampleRate ) {
+        // the grid is dense up to a bit above the highest frequency within the dynamic range, and sparse above, where
+        // the bank only needs to attenuate enough
+        double max = Double.NEGATIVE_INFINITY;
+        for (final double f : filter) {
+            max = Math.max( max, f );
+        }
+        final double threshold = max * Math.pow( 10, -DYNAMIC_RANGE_DB / 20 );
+        int highest = 0;
+        for (int bin = 0; bin < filter.length; bin++) {
+            if (filter[bin] > threshold) {
+                highest = bin;
+            }
+        }
+        // nothing is synthesised below the lowest pitch, and no resonator can change the response at DC
+        final int lowest = Math.max( 1, Math.min( filter.length - 1, (int) Math.ceil( AcousticParameters.MIN_PITCH * (double) windowLength / sampleRate ) ) );
+        final int active = Math.max( lowest, Math.min( filter.length - 1, highest + highest / 4 + 1 ) );
+        final int dense = Math.min( GRID, active - lowest + 1 );
+        final int sparse = Math.min( FLOOR_GRID, filter.length - 1 - active );
+        final int n = dense + sparse;
+
+        final double[] cos1 = new double[n];
+        final double[] cos2 = new double[n];
+        final double[] frequency = new double[n];
+        final double[] target = new double[n];
+        final boolean[] floor = new boolean[n];
+        final double maxDb = 20 * Math.log10( max );
+        for (int g = 0; g < n; g++) {
+            final int bin;
+            if (g < dense) {
+                bin = dense == 1 ? lowest : lowest + (int) Math.round( g * (active - lowest) / (double) (dense - 1) );
+            }
+            else {
+                bin = active + (int) Math.round( (g - dense + 1) * (filter.length - 1 - active) / (double) sparse );
+            }
+            frequency[g] = bin * (double) sampleRate / windowLength;
+            final double w = 2 * Math.PI * frequency[g] / sampleRate;
+            cos1[g] = Math.cos( w );
+            cos2[g] = Math.cos( 2 * w );
+            // below the dynamic range only a response above the floor counts as deviation
+            floor[g] = filter[bin] <= threshold;
+            target[g] = Math.max( 20 * Math.log10( Math.max( filter[bin], Double.MIN_NORMAL ) ), maxDb - DYNAMIC_RANGE_DB );
+        }
+
+        final ResonatorBank bank = new ResonatorBank( MAX_TILT_STAGES + MAX_SECTIONS );
+
+        // tilt: the number of one-pole stages and the cutoff with the least squared error
+        final double[] residual = new double[n];
+        final double[] onePole = new double[n];
+        double bestError = Double.POSITIVE_INFINITY;
+        int bestStages = 0;
+        double bestPole = 0;
+        for (int c = 0; c < TILT_CUTOFFS; c++) {
+            final double cutoff = sampleRate / 2.0 * Math.pow( 2, -c / 2.0 );
+            final double a = Math.exp( -2 * Math.PI * cutoff / sampleRate );
+            for (int g = 0; g < n; g++) {
+                onePole[g] = biquadDb( 1 - a, 0, 0, -a, 0, cos1[g], cos2[g] );
+            }
+            for (int stages = c == 0 ? 0 : 1; stages <= MAX_TILT_STAGES; stages++) {
+                for (int g = 0; g < n; g++) {
+                    residual[g] = target[g] - stages * onePole[g];
+                }
+                final double error = squaredError( residual, mean( residual, floor ), floor );
+                if (error < bestError) {
+                    bestError = error;
+                    bestStages = stages;
+                    bestPole = a;
+                }
+            }
+        }
+        for (int stages = 0; stages < bestStages; stages++) {
+            bank.add( 1 - bestPole, 0, 0, -bestPole, 0 );
+        }
+        for (int g = 0; g < n; g++) {
+            residual[g] = target[g] - bestStages * biquadDb( 1 - bestPole, 0, 0, -bestPole, 0, cos1[g], cos2[g] );
+        }
+
+        // resonators, at the largest deviation first
+        final double spacing = (frequency[dense - 1] - frequency[0]) / Math.max( 1, dense - 1 );
+        final int[] peaks = new int[MAX_SECTIONS];
+        final double[][] coefficients = new double[MAX_SECTIONS][];
+        final double[][] responses = new double[MAX_SECTIONS][];
+        int sections = 0;
+        double offset = mean( residual, floor );
+        while (sections < MAX_SECTIONS) {
+            int peak = 0;
+            for (int g = 1; g < n; g++) {
+                if (Math.abs( deviation( residual, offset, floor, g ) ) > Math.abs( deviation( residual, offset, floor, peak ) )) {
+                    peak = g;
+                }
+            }
+            if (Math.abs( deviation( residual, offset, floor, peak ) ) < TOLERANCE_DB) {
+                break;
+            }
+            peaks[sections] = peak;
+            coefficients[sections] = resonator( residual, offset, peak, frequency, spacing, sampleRate );
+            responses[sections] = response( coefficients[sections], cos1, cos2 );
+            accumulate( residual, responses[sections], -1 );
+            offset = mean( residual, floor );
+            sections++;
+        }
+
+        // the resonators overlap, so re-estimate each one against the residual of all others
+        for (int pass = 0; pass < REFINEMENTS; pass++) {
+            for (int s = 0; s < sections; s++) {
+                accumulate( residual, responses[s], 1 );
+                offset = mean( residual, floor );
+                coefficients[s] = resonator( residual, offset, peaks[s], frequency, spacing, sampleRate );
+                responses[s] = response( coefficients[s], cos1, cos2 );
+                accumulate( residual, responses[s], -1 );
+            }
+            offset = mean( residual, floor );
+        }
+        for (int s = 0; s < sections; s++) {
+            final double[] c = coefficients[s];
+            bank.add( c[0], c[1], c[2], c[3], c[4] );
+        }
+
+        bank.gain = Math.pow( 10, offset / 20 );
+        return bank;
+    }
+
+    /**
+     * @return the mean of the values above the floor
+     */
+    private static double mean( double[] values, boolean[] floor ) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!floor[i]) {
+                sum += values[i];
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Designs a peaking resonator, after R. Bristow-Johnson's audio EQ cookbook, for the deviation of the residual from
+     * the offset at the given grid point. The bandwidth is the width of the deviation at half its height
+     *
+     * @return b0, b1, b2, a1, a2
+     */
+    private static double[] resonator( double[] residual, double offset, int peak, double[] frequency, double spacing, int sampleRate ) {
+        final double gain = residual[peak] - offset;
+        // a point lies within the width if its deviation has the sign of the gain and more than half its size
+        final double half = offset + gain / 2;
+        int left = peak;
+        while (left > 0 && (residual[left - 1] - half) * gain > 0) {
+            left--;
+        }
+        int right = peak;
+        while (right < residual.length - 1 && (residual[right + 1] - half) * gain > 0) {
+            right++;
+        }
+        final double f0 = Math.min( Math.max( frequency[peak], spacing / 2 ), sampleRate / 2.0 - spacing / 2 );
+        final double bandwidth = Math.max( frequency[right] - frequency[left], spacing );
+        final double q = Math.max( MIN_Q, Math.min( MAX_Q, f0 / bandwidth ) );
+
+        final double amp = Math.pow( 10, gain / 40 );
+        final double w0 = 2 * Math.PI * f0 / sampleRate;
+        final double alpha = Math.sin( w0 ) / (2 * q);
+        final double a0 = 1 + alpha / amp;
+        final double b1 = -2 * Math.cos( w0 ) / a0;
+        return new double[] { (1 + alpha * amp) / a0, b1, (1 - alpha * amp) / a0, b1, (1 - alpha / amp) / a0 };
+    }
+
+    /**
+     * @return the response of a section in dB on the grid
+     */
+    private static double[] response( double[] c, double[] cos1, double[] cos2 ) {
+        final double[] db = new double[cos1.length];
+        for (int g = 0; g < db.length; g++) {
+            db[g] = biquadDb( c[0], c[1], c[2], c[3], c[4], cos1[g], cos2[g] );
+        }
+        return db;
+    }
+
+    private static double squaredError( double[] residual, double offset, boolean[] floor ) {
+        double sum = 0;
+        for (int i = 0; i < residual.length; i++) {
+            final double d = deviation( residual, offset, floor, i );
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    /**
+     * Coefficients per section, normalised to a0 = 1
+     */
+    private final double[] b0;
+    private final double[] b1;
+    private final double[] b2;
+    private final double[] a1;
+    private final double[] a2;
+    private int sections;
+
+    /**
+     * Linear gain applied after the sections
+     */
+    private double gain = 1;
+
+    private ResonatorBank( int capacity ) {
+        b0 = new double[capacity];
+        b1 = new double[capacity];
+        b2 = new double[capacity];
+        a1 = new double[capacity];
+        a2 = new double[capacity];
+    }
+
+    private void add( double b0, double b1, double b2, double a1, double a2 ) {
+        this.b0[sections] = b0;
+        this.b1[sections] = b1;
+        this.b2[sections] = b2;
+        this.a1[sections] = a1;
+        this.a2[sections] = a2;
+        sections++;
+    }
+
+    /**
+     * @return the number of second-order sections, including the tilt stages
+     */
+    public int getSectionCount() {
+        return sections;
+    }
+
+    /**
+     * Filters the first length samples of in and writes them to out
+     *
+     * @param outputGain applied on top of the gain of the bank, e.g. to match the level of the STFT
+     */
+    public void process( double[] in, int length, double[] out, double outputGain ) {
+        System.arraycopy( in, 0, out, 0, length );
+        for (int s = 0; s < sections; s += 4) {
+            processGroup( out, length, s );
+        }
+        Kernels.get().scale( out, 0, length, gain * outputGain );
+    }
+
+    /**
+     * Runs four consecutive sections over the signal in place. Each section is a recursion whose latency, not its
+     * arithmetic, limits the speed, so the sections are skewed by one sample each: in every step section j filters
+     * sample i - j, and the four recursions are independent. Samples before the start are zero, which leaves the zero
+     * state of the later sections untouched. Missing sections of the last group pass the signal through
+     */
+    private void processGroup( double[] x, int length, int first ) {
+        final double[][] c = new double[4][];
+        for (int j = 0; j < 4; j++) {
+            final int s = first + j;
+            c[j] = s < sections ? new double[] { b0[s], b1[s], b2[s], a1[s], a2[s] } : new double[] { 1, 0, 0, 0, 0 };
+        }
+        final double p0 = c[0][0], p1 = c[0][1], p2 = c[0][2], p3 = c[0][3], p4 = c[0][4];
+        final double q0 = c[1][0], q1 = c[1][1], q2 = c[1][2], q3 = c[1][3], q4 = c[1][4];
+        final double r0 = c[2][0], r1 = c[2][1], r2 = c[2][2], r3 = c[2][3], r4 = c[2][4];
+        final double t0 = c[3][0], t1 = c[3][1], t2 = c[3][2], t3 = c[3][3], t4 = c[3][4];
+
+        // state of each section (transposed direct form II) and the output it passes to the next one
+        double pz1 = 0, pz2 = 0, qz1 = 0, qz2 = 0, rz1 = 0, rz2 = 0, tz1 = 0, tz2 = 0;
+        double py = 0, qy = 0, ry = 0;
+        for (int i = 0; i < length + 3; i++) {
+            final double tx = ry;
+            final double ty = t0 * tx + tz1;
+            tz1 = t1 * tx - t3 * ty + tz2;
+            tz2 = t2 * tx - t4 * ty;
+
+            final double rx = qy;
+            ry = r0 * rx + rz1;
+            rz1 = r1 * rx - r3 * ry + rz2;
+            rz2 = r2 * rx - r4 * ry;
+
+            final double qx = py;
+            qy = q0 * qx + qz1;
+            qz1 = q1 * qx - q3 * qy + qz2;
+            qz2 = q2 * qx - q4 * qy;
+
+            final double px = i < length ? x[i] : 0;
+            py = p0 * px + pz1;
+            pz1 = p1 * px - p3 * py + pz2;
+            pz2 = p2 * px - p4 * py;
+
+            if (i >= 3) {
+                x[i - 3] = ty;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package se.lu.lucs.sound;
+
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * Samples and densities of the distributions used by the generator, drawing from a caller-supplied {@link RandomStream}.
+ * Unlike the commons math distributions nothing is allocated per call, and no generator is seeded.
+ *
+ * Normal variates use the ziggurat method of Marsaglia and Tsang (2000) with 128 layers. Layer index and position are
+ * taken from different bits of one 64 bit draw, which avoids the correlation of the original single 32 bit version.
+ * Gamma variates use the squeeze method of Marsaglia and Tsang (2000), boosted for shapes below 1.
+ */
+public class Sampler {
+    private static final int LAYERS = 128;
+    private static final double R = 3.442619855899;
+    private static final double V = 9.91256303526217e-3;
+    private static final double M = 2147483648.0;
+
+    private static final int[] KN = new int[LAYERS];
+    private static final double[] WN = new double[LAYERS];
+    private static final double[] FN = new double[LAYERS];
+
+    static {
+        double dn = R;
+        double tn = dn;
+        final double q = V / Math.exp( -.5 * dn * dn );
+
+        KN[0] = (int) (dn / q * M);
+        KN[1] = 0;
+        WN[0] = q / M;
+        WN[LAYERS - 1] = dn / M;
+        FN[0] = 1.0;
+        FN[LAYERS - 1] = Math.exp( -.5 * dn * dn );
+
+        for (int i = LAYERS - 2; i >= 1; i--) {
+            dn = Math.sqrt( -2 * Math.log( V / dn + Math.exp( -.5 * dn * dn ) ) );
+            KN[i + 1] = (int) (dn / tn * M);
+            tn = dn;
+            FN[i] = Math.exp( -.5 * dn * dn );
+            WN[i] = dn / M;
+        }
+    }
+
+    /**
+     * Fills out[from, to) with normal variates
+     */
+    public static void fillGaussian( RandomStream random, double[] out, int from, int to, double mean, double sd ) {
+        for (int i = from; i < to; i++) {
+            out[i] = mean + sd * nextGaussian( random );
+        }
+    }
+
+    /**
+     * Fills out[from, to) with variates uniformly distributed in [min, max)
+     */
+    public static void fillUniform( RandomStream random, double[] out, int from, int to, double min, double max ) {
+        final double range = max - min;
+        for (int i = from; i < to; i++) {
+            out[i] = min + range * random.nextDouble();
+        }
+    }
+
+    /**
+     * @return the density of the gamma distribution with the given shape and scale at x
+     */
+    public static double gammaDensity( double x, double shape, double scale ) {
+        if (x < 0) {
+            return 0;
+        }
+        return Math.exp( (shape - 1) * Math.log( x ) - x / scale - Gamma.logGamma( shape ) - shape * Math.log( scale ) );
+    }
+
+    /**
+     * Fills out[i] with the density of the gamma distribution at x0 + i * step, for i in [0, n). Gives exactly the values of
+     * {@link #gammaDensity(double, double, double)}, but computes the normalisation only once
+     *
+     * @param x0 must not be negative
+     */
+    public static void gammaDensity( double[] out, int n, double x0, double step, double shape, double scale ) {
+        final double logGamma = Gamma.logGamma( shape );
+        final double logScale = shape * Math.log( scale );
+        for (int i = 0; i < n; i++) {
+            final double x = x0 + i * step;
+            out[i] = Math.exp( (shape - 1) * Math.log( x ) - x / scale - logGamma - logScale );
+        }
+    }
+
+    /**
+     * @return a gamma variate with the given shape and scale (the inverse of the rate)
+     */
+    public static double nextGamma( RandomStream random, double shape, double scale ) {
+        if (shape <= 0 || scale <= 0) {
+            throw new IllegalArgumentException( "shape and scale must be positive, not " + shape + " and " + scale );
+        }
+        if (shape < 1) {
+            // boost: gamma(a) = gamma(a + 1) * U^(1 / a)
+            return nextGamma( random, shape + 1, scale ) * Math.pow( 1 - random.nextDouble(), 1 / shape );
+        }
+
+        final double d = shape - 1 / 3.0;
+        final double c = 1 / Math.sqrt( 9 * d );
+        while (true) {
+            double x;
+            double v;
+            do {
+                x = nextGaussian( random );
+                v = 1 + c * x;
+            }
+            while (v <= 0);
+            v = v * v * v;
+            final double u = random.nextDouble();
+            final double x2 = x * x;
+            if (u < 1 - .0331 * x2 * x2 || Math.log( u ) < .5 * x2 + d * (1 - v + Math.log( v ))) {
+                return d * v * scale;
+            }
+        }
+    }
+
+    /**
+     * @return a standard normal variate
+     */
+    public static double nextGaussian( RandomStream random ) {
+        final long bits = random.nextLong();
+        int hz = (int) (bits >>> 32);
+        int iz = (int) bits & LAYERS - 1;
+        if (Math.abs( (long) hz ) < KN[iz]) {
+            return hz * WN[iz];
+        }
+
+        while (true) {
+            final double x = hz * WN[iz];
+            if (iz == 0) {
+                // the tail beyond R
+                double xt;
+                double y;
+                do {
+                    xt = -Math.log( 1 - random.nextDouble() ) / R;
+                    y = -Math.log( 1 - random.nextDouble() );
+                }
+                while (y + y < xt * xt);
+                return hz > 0 ? R + xt : -R - xt;
+            }
+            if (FN[iz] + random.nextDouble() * (FN[iz - 1] - FN[iz]) < Math.exp( -.5 * x * x )) {
+                return x;
+            }
+
+            final long next = random.nextLong();
+            hz = (int) (next >>> 32);
+            iz = (int) next & LAYERS - 1;
+            if (Math.abs( (long) hz ) < KN[iz]) {
+                return hz * WN[iz];
+            }
+        }
+    }
+
+    /**
+     * @return the density of the normal distribution with the given mean and standard deviation at x
+     */
+    public static double normalDensity( double x, double mean, double sd ) {
+        final double z = (x - mean) / sd;
+        return Math.exp( -.5 * z * z ) / (sd * Math.sqrt( 2 * Math.PI ));
+    }
+}
@@ -0,0 +1,90 @@
+package se.lu.lucs.sound;
+
+/**
+ * Plain loops, the fallback of {@link Kernels} and the reference the other implementations are compared with
+ */
+public class ScalarKernels extends Kernels {
+    @Override
+    public double correlation( double[] x, double[] y, int n ) {
+        double xMean = 0;
+        double yMean = 0;
+        for (int i = 0; i < n; i++) {
+            xMean += x[i];
+            yMean += y[i];
+        }
+        xMean /= n;
+        yMean /= n;
+
+        double sxx = 0;
+        double syy = 0;
+        double sxy = 0;
+        for (int i = 0; i < n; i++) {
+            final double dx = x[i] - xMean;
+            final double dy = y[i] - yMean;
+            sxx += dx * dx;
+            syy += dy * dy;
+            sxy += dx * dy;
+        }
+        if (sxx == 0 || syy == 0) {
+            return Double.NaN;
+        }
+        return Math.max( -1, Math.min( 1, sxy / Math.sqrt( sxx * syy ) ) );
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void harmonic( double gain, double[] twoCos, double[] previous, double[] current, double[] out, int offset, int n ) {
+        for (int i = 0; i < n; i++) {
+            out[offset + i] += gain * current[i];
+            final double next = twoCos[i] * current[i] - previous[i];
+            previous[i] = current[i];
+            current[i] = next;
+        }
+    }
+
+    @Override
+    public void multiply( double[] a, int aOffset, double[] b, int bOffset, int n ) {
+        for (int i = 0; i < n; i++) {
+            a[aOffset + i] *= b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply( float[] a, int aOffset, float[] b, int bOffset, int n ) {
+        for (int i = 0; i < n; i++) {
+            a[aOffset + i] *= b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiplyAdd( double[] a, double[] b, double[] out, int offset, int n ) {
+        for (int i = 0; i < n; i++) {
+            out[offset + i] += a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void multiplyAdd( float[] a, float[] b, float[] out, int offset, int n ) {
+        for (int i = 0; i < n; i++) {
+            out[offset + i] += a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void scale( double[] a, int from, int to, double factor ) {
+        for (int i = from; i < to; i++) {
+            a[i] *= factor;
+        }
+    }
+
+    @Override
+    public void scale( float[] a, int from, int to, float factor ) {
+        for (int i = from; i < to; i++) {
+            a[i] *= factor;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package se.lu.lucs.sound;
+
+import java.util.Arrays;
+
+/**
+ * Filters a signal in the frequency domain: the signal is cut into overlapping frames, every frame is transformed,
+ * multiplied with a (real) spectral filter and transformed back, and the frames are overlap-added under a gaussian window.
+ *
+ * An engine is planned once per window length and overlap. It keeps the FFT plan, the window and the scratch arrays
+ * for one frame, so filtering does not allocate anything per frame. Since both the signal and the filter are real,
+ * frames are transformed with a {@link RealFft} and only the lower half of each spectrum is ever computed. Because of the scratch arrays an instance must
+ * not be shared between threads; use {@link SynthesisContext#getStftEngine(int, int)} to obtain one.
+ */
+public class StftEngine {
+    /**
+     * Generates a gaussian window
+     *
+     * @param length
+     * @return
+     */
+    static double[] generateGaussianWindow( int length ) {
+        //(exp(-12*(((1:n)/n)-0.5)^2)-exp(-12))/(1-exp(-12))
+        final double[] w = new double[length];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = Math.exp( -12 * Math.pow( i / (double) w.length - .5, 2 ) - Math.exp( -12 ) ) / (1 - Math.exp( -12 ));
+        }
+        return w;
+    }
+
+    private final int windowLength;
+    private final int overlap;
+
+    /**
+     * Step between two analysed frames
+     */
+    private final double delta;
+
+    /**
+     * Step between two resynthesised frames
+     */
+    private final int hop;
+
+    private final RealFft fft;
+    private final double[] window;
+
+    /**
+     * Normalisation of the overlap-add, hop / (sum of window)^2
+     */
+    private final double scale;
+
+    /**
+     * The gain of the whole analysis and resynthesis for a flat filter, 1 / (sum of window)
+     */
+    private final double passbandGain;
+
+    /**
+     * The ratio of the RMS level of filtered noise to that of noise synthesised from independent frames, see
+     * {@link #noise(RandomStream, double[], double[], int)}
+     */
+    private final double noiseGain;
+    private final double[] re;
+    private final double[] im;
+    private final double[] frame;
+
+    /**
+     * Single precision counterparts of the window and the scratch arrays
+     */
+    private final float[] windowF;
+    private final float[] reF;
+    private final float[] imF;
+    private final float[] frameF;
+
+    public StftEngine( int windowLength, int overlap ) {
+        this.windowLength = windowLength;
+        this.overlap = overlap;
+        delta = windowLength - overlap * windowLength / 100.0;
+        hop = windowLength * (100 - overlap) / 100;
+
+        fft = RealFft.forLength( windowLength );
+        window = generateGaussianWindow( windowLength );
+
+        double wSum = 0;
+        for (final double element : window) {
+            wSum += element;
+        }
+        scale = hop / (wSum * wSum);
+        passbandGain = 1 / wSum;
+
+        // the frames of a filtered signal overlap in the input, so their windows add up coherently: a sample is scaled
+        // with the sum of the windows over it. Independent frames only add up in power
+        double coherent = 0;
+        double independent = 0;
+        for (int i = 0; i < hop; i++) {
+            double sum = 0;
+            for (int j = i; j < windowLength; j += hop) {
+                sum += window[j];
+                independent += window[j] * window[j];
+            }
+            coherent += sum * sum;
+        }
+        noiseGain = Math.sqrt( coherent / independent );
+
+        re = new double[windowLength / 2];
+        im = new double[windowLength / 2];
+        frame = new double[windowLength];
+
+        windowF = new float[windowLength];
+        for (int i = 0; i < windowLength; i++) {
+            windowF[i] = (float) window[i];
+        }
+        reF = new float[windowLength / 2];
+        imF = new float[windowLength / 2];
+        frameF = new float[windowLength];
+    }
+
+    /**
+     * Filters the first length samples of ampl and writes the result to out
+     *
+     * @param ampl the signal
+     * @param length number of samples of ampl to use
+     * @param filter linear gain for the lower windowLength / 2 frequency bins
+     * @param out receives the filtered signal, must hold at least {@link #getOutputLength(int)} samples
+     * @return the number of samples written to out
+     */
+    public int filter( double[] ampl, int length, double[] filter, double[] out ) {
+        final int colNum = getFrameCount( length );
+        final int xlen = getOutputLength( length );
+        final int half = windowLength / 2;
+        final Kernels kernels = Kernels.get();
+
+        Arrays.fill( out, 0, xlen, 0.0 );
+
+        int frameOffset = 0;
+        for (int col = 0; col < colNum; col++) {
+            fft.forward( ampl, frameOffset, re, im );
+
+            // apply filter to the lower half of the spectrum. The Nyquist bin (packed into im[0]) is not covered by
+            // the filter and takes the real part of the highest filtered bin instead
+            re[0] *= filter[0];
+            kernels.multiply( re, 1, filter, 1, half - 1 );
+            kernels.multiply( im, 1, filter, 1, half - 1 );
+            im[0] = re[half - 1];
+
+            fft.inverse( re, im, frame );
+
+            final int b = col * hop;
+            kernels.multiplyAdd( frame, window, out, b, windowLength );
+            frameOffset += delta;
+        }
+
+        kernels.scale( out, 0, xlen, scale );
+        return xlen;
+    }
+
+    /**
+     * Single precision version of {@link #filter(double[], int, double[], double[])}. Frames, spectra and the overlap-add
+     * are computed in float, which halves the memory traffic and doubles the width of the vector kernels
+     */
+    public int filter( float[] ampl, int length, float[] filter, float[] out ) {
+        final int colNum = getFrameCount( length );
+        final int xlen = getOutputLength( length );
+        final int half = windowLength / 2;
+        final Kernels kernels = Kernels.get();
+
+        Arrays.fill( out, 0, xlen, 0.0f );
+
+        int frameOffset = 0;
+        for (int col = 0; col < colNum; col++) {
+            fft.forward( ampl, frameOffset, reF, imF );
+
+            reF[0] *= filter[0];
+            kernels.multiply( reF, 1, filter, 1, half - 1 );
+            kernels.multiply( imF, 1, filter, 1, half - 1 );
+            imF[0] = reF[half - 1];
+
+            fft.inverse( reF, imF, frameF );
+
+            kernels.multiplyAdd( frameF, windowF, out, col * hop, windowLength );
+            frameOffset += delta;
+        }
+
+        kernels.scale( out, 0, xlen, (float) scale );
+        return xlen;
+    }
+
+    public double[] filter( double[] ampl, double[] filter ) {
+        final double[] out = new double[getOutputLength( ampl.length )];
+        filter( ampl, ampl.length, filter, out );
+        return out;
+    }
+
+    private int getFrameCount( int length ) {
+        final double max = length - windowLength;
+        return (int) ((max - 1) / delta);
+    }
+
+    /**
+     * @return the number of samples {@link #filter(double[], int, double[], double[])} produces for an input of the given length.
+     * Note that this is shorter than the input, because there is no padding at the end of the signal
+     */
+    public int getOutputLength( int length ) {
+        return windowLength + (getFrameCount( length ) - 1) * hop;
+    }
+
+    /**
+     * @return the factor a signal is scaled with when filtered with a flat filter of gain 1
+     */
+    public double getPassbandGain() {
+        return passbandGain;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    public int getWindowLength() {
+        return windowLength;
+    }
+
+    /**
+     * Synthesises noise with the given spectral envelope directly in the frequency domain: every frame is a spectrum with
+     * random real and imaginary parts, multiplied with the filter, transformed back and overlap-added as in
+     * {@link #filter(double[], int, double[], double[])}. The spectra have the expected power of a frame of white noise
+     * uniform in [-1, 1], raised by the coherent gain of overlapping filtered frames, so the result has the level of such
+     * noise run through the filter. It needs no forward transforms and has no fade at the start and end, where fewer
+     * frames overlap
+     *
+     * @param random
+     * @param filter linear gain for the lower windowLength / 2 frequency bins
+     * @param out receives the noise, must hold at least length samples
+     * @param length number of samples to synthesise
+     */
+    public void noise( RandomStream random, double[] filter, double[] out, int length ) {
+        final int half = windowLength / 2;
+        final Kernels kernels = Kernels.get();
+        // a uniform variable in [-c, c] has the variance c^2 / 3, the spectrum of a frame of uniform noise N / 3 per bin
+        final double dc = Math.sqrt( windowLength ) * noiseGain;
+        final double bin = Math.sqrt( windowLength / 2.0 ) * noiseGain;
+
+        Arrays.fill( out, 0, length, 0.0 );
+
+        // the first frame ends one hop into the signal, so every sample is covered by as many frames as in the middle
+        for (int b = hop - windowLength; b < length; b += hop) {
+            re[0] = (random.nextDouble() * 2 - 1) * dc * filter[0];
+            for (int k = 1; k < half; k++) {
+                re[k] = (random.nextDouble() * 2 - 1) * bin * filter[k];
+                im[k] = (random.nextDouble() * 2 - 1) * bin * filter[k];
+            }
+            im[0] = re[half - 1];
+
+            fft.inverse( re, im, frame );
+
+            final int from = Math.max( 0, -b );
+            final int to = Math.min( windowLength, length - b );
+            if (from == 0 && to == windowLength) {
+                kernels.multiplyAdd( frame, window, out, b, windowLength );
+            }
+            else {
+                for (int i = from; i < to; i++) {
+                    out[b + i] += frame[i] * window[i];
+                }
+            }
+        }
+
+        kernels.scale( out, 0, length, scale );
+    }
+}
@@ -0,0 +1,138 @@
+package se.lu.lucs.sound;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything the {@link Generator} needs to render a bout besides the parameters: a private random stream for unseeded bouts,
+ * the planned {@link StftEngine}s, scratch buffers for intermediate signals and an optional {@link SynthesisProfile}. The scratch buffers grow to the largest
+ * syllable seen so far, up to {@link #MAX_RETAINED_LENGTH}, and are then reused, so rendering many bouts on the same
+ * context hardly allocates anything but the results.
+ *
+ * A context must only be used by one thread at a time. {@link #current()} returns the context of the current thread,
+ * which is what the static methods of the Generator use, so parallel renders never share state. The thread keeps that
+ * context as long as it lives, so code running on long-lived threads it does not own, like a servlet, should create its
+ * own context and pass it in.
+ */
+public class SynthesisContext {
+    /**
+     * The intermediate signals of a syllable that are kept in scratch buffers
+     */
+    enum Scratch {
+        PHASE, HARMONICS, JITTER, DRIFT, NOISE, SINGLE_INPUT, SINGLE_FILTER, SINGLE_OUTPUT, CROSSFADE
+    }
+
+    /**
+     * Length of the largest scratch buffer a context keeps, about 1.5 s at 44.1 kHz. Longer syllables get buffers that
+     * are dropped after use, so a context never holds on to more than a few MB
+     */
+    static final int MAX_RETAINED_LENGTH = 1 << 16;
+
+    private final static ThreadLocal<SynthesisContext> CONTEXTS = ThreadLocal.withInitial( SynthesisContext::new );
+
+    /**
+     * Returns the context confined to the current thread, creating it on first use
+     */
+    public static SynthesisContext current() {
+        return CONTEXTS.get();
+    }
+
+    private final RandomStream random;
+    private final Map<Long, StftEngine> engines = new HashMap<>();
+    private final double[][] scratch = new double[Scratch.values().length][];
+    private final float[][] floatScratch = new float[Scratch.values().length][];
+
+    /**
+     * The resonator bank fitted last, and the filter it was fitted to. The voiced part and the breathing of a syllable
+     * share their filter, so the bank is only fitted once per syllable
+     */
+    private double[] resonatorFilter;
+    private ResonatorBank resonatorBank;
+
+    private SynthesisProfile profile;
+
+    public SynthesisContext() {
+        this( new RandomStream() );
+    }
+
+    public SynthesisContext( RandomStream random ) {
+        this.random = random;
+    }
+
+    /**
+     * @return the profile to time the stages of a render with: the one set on this context, else the one that only reports
+     * events if a flight recording is running, else null
+     */
+    SynthesisProfile getActiveProfile() {
+        return profile != null ? profile : SynthesisProfile.events();
+    }
+
+    /**
+     * @return the profile set with {@link #setProfile(SynthesisProfile)}, or null
+     */
+    public SynthesisProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the stream that bouts without a {@link BoutParameters#seed} split their random numbers off
+     */
+    public RandomStream getRandom() {
+        return random;
+    }
+
+    /**
+     * Single precision version of {@link #getScratch(Scratch, int)}
+     */
+    float[] getFloatScratch( Scratch buffer, int length ) {
+        float[] s = floatScratch[buffer.ordinal()];
+        if (s == null || s.length < length) {
+            s = new float[length];
+            if (length <= MAX_RETAINED_LENGTH) {
+                floatScratch[buffer.ordinal()] = s;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns the {@link ResonatorBank} for the given filter, fitting it unless it was the filter of the previous call.
+     * Filters are compared by identity, so a filter must not be modified after it was used
+     */
+    ResonatorBank getResonatorBank( double[] filter, int windowLength, int sampleRate ) {
+        if (filter != resonatorFilter) {
+            resonatorBank = ResonatorBank.fit( filter, windowLength, sampleRate );
+            resonatorFilter = filter;
+        }
+        return resonatorBank;
+    }
+
+    /**
+     * Returns a scratch buffer of at least the given length. The content is undefined, and the buffer is only valid until
+     * the same buffer is requested again
+     */
+    double[] getScratch( Scratch buffer, int length ) {
+        double[] s = scratch[buffer.ordinal()];
+        if (s == null || s.length < length) {
+            s = new double[length];
+            if (length <= MAX_RETAINED_LENGTH) {
+                scratch[buffer.ordinal()] = s;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns the engine for the given window length and overlap, planning it on first use
+     */
+    public StftEngine getStftEngine( int windowLength, int overlap ) {
+        return engines.computeIfAbsent( (long) windowLength << 32 | overlap, k -> new StftEngine( windowLength, overlap ) );
+    }
+
+    /**
+     * Sets a profile that every bout and syllable rendered with this context adds its stages to, null to stop profiling
+     */
+    public void setProfile( SynthesisProfile profile ) {
+        this.profile = profile;
+    }
+}
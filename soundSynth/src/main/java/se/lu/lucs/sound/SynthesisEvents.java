@@ -0,0 +1,62 @@
+package se.lu.lucs.sound;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Reports the stages of a {@link SynthesisProfile} to a recorder outside the generator. The implementation is chosen once,
+ * when the class is initialised, like the {@link Kernels}: the first provider registered with {@link ServiceLoader} that
+ * loads and reports itself {@link #isSupported() supported} is used, otherwise stages are not reported. The
+ * soundSynth-jfr module provides flight recorder events; the core module does not depend on the flight recorder API,
+ * so it builds and runs on every Java 8 runtime.
+ */
+public abstract class SynthesisEvents {
+    private static final SynthesisEvents INSTANCE = load();
+
+    /**
+     * @return the provider selected at startup, or null if there is none
+     */
+    static SynthesisEvents get() {
+        return INSTANCE;
+    }
+
+    private static SynthesisEvents load() {
+        final Iterator<SynthesisEvents> providers = ServiceLoader.load( SynthesisEvents.class, SynthesisEvents.class.getClassLoader() ).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    return null;
+                }
+                final SynthesisEvents e = providers.next();
+                if (e.isSupported()) {
+                    return e;
+                }
+            }
+            catch (ServiceConfigurationError | LinkageError e) {
+                // provider not available on this runtime, try the next one
+            }
+        }
+    }
+
+    /**
+     * Reports a run of a stage that just ended
+     *
+     * @param stage
+     * @param nanos the time spent in the stage
+     * @param samples see {@link SynthesisProfile.Stage} for what is counted
+     */
+    public abstract void commit( SynthesisProfile.Stage stage, long nanos, long samples );
+
+    /**
+     * @return if stages are currently recorded, checked before every stage, so it has to be cheap
+     */
+    public abstract boolean isRecording();
+
+    /**
+     * @return whether this implementation can run on this runtime
+     */
+    public boolean isSupported() {
+        return true;
+    }
+}
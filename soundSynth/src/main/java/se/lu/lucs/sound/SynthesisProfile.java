@@ -0,0 +1,160 @@
+package se.lu.lucs.sound;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The time spent in each stage of the synthesis and the number of samples it produced, to find out which parameters make
+ * a render slow. Set a profile on a {@link SynthesisContext} and every bout and syllable rendered with that context adds
+ * to it, including the syllables the generator renders concurrently on other threads. A profile may be shared by several
+ * contexts.
+ *
+ * While the {@link SynthesisEvents} provider is recording, e.g. a flight recording with the event of the soundSynth-jfr
+ * module, every stage is also reported to it, for contexts without a profile too, e.g. the ones of a batch render.
+ * Without a profile and a recording, the generator only checks for either once per syllable.
+ */
+public class SynthesisProfile {
+    /**
+     * The timed stages. Cheap bookkeeping between them is not timed, so the stages do not quite add up to the total
+     */
+    public enum Stage {
+        /**
+         * The pitch contour of a syllable, counting pitch samples
+         */
+        PITCH_CONTOUR,
+        /**
+         * The spectral envelope of a syllable, counting frequency bins
+         */
+        SPECTRAL_ENVELOPE,
+        /**
+         * Vibrato, jitter, drift and the phase of the fundamental
+         */
+        PITCH_MODULATION,
+        /**
+         * Summing the harmonics of the voiced part
+         */
+        HARMONICS,
+        /**
+         * Shimmer and vocal fry
+         */
+        CYCLE_GAINS,
+        /**
+         * Filtering the voiced part with the spectral envelope
+         */
+        FILTER,
+        /**
+         * Synthesising and filtering breathing noise
+         */
+        BREATHING,
+        /**
+         * Fades, cross-fades and mixing breathing into the voiced part
+         */
+        CROSSFADE,
+        /**
+         * Putting the syllables of a bout together, counting the samples of the bout
+         */
+        ASSEMBLY
+    }
+
+    private static final int STAGES = Stage.values().length;
+
+    private static final SynthesisEvents EVENTS = SynthesisEvents.get();
+
+    /**
+     * Only reports events, for contexts without a profile while a recording is running
+     */
+    private static final SynthesisProfile EVENTS_ONLY = new SynthesisProfile( false );
+
+    /**
+     * @return a profile that only reports events if a recording has enabled them, else null
+     */
+    static SynthesisProfile events() {
+        return EVENTS != null && EVENTS.isRecording() ? EVENTS_ONLY : null;
+    }
+
+    private final boolean accumulate;
+    private final AtomicLongArray calls = new AtomicLongArray( STAGES );
+    private final AtomicLongArray nanos = new AtomicLongArray( STAGES );
+    private final AtomicLongArray samples = new AtomicLongArray( STAGES );
+
+    public SynthesisProfile() {
+        this( true );
+    }
+
+    private SynthesisProfile( boolean accumulate ) {
+        this.accumulate = accumulate;
+    }
+
+    /**
+     * @return how often the stage ran
+     */
+    public long getCalls( Stage stage ) {
+        return calls.get( stage.ordinal() );
+    }
+
+    /**
+     * @return the time spent in the stage in ns, summed over all threads
+     */
+    public long getNanos( Stage stage ) {
+        return nanos.get( stage.ordinal() );
+    }
+
+    /**
+     * @return the number of samples the stage produced, see {@link Stage} for what it counts
+     */
+    public long getSamples( Stage stage ) {
+        return samples.get( stage.ordinal() );
+    }
+
+    /**
+     * @return the time spent in all stages in ns
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (int i = 0; i < STAGES; i++) {
+            total += nanos.get( i );
+        }
+        return total;
+    }
+
+    /**
+     * Adds a run of a stage that started at the given {@link System#nanoTime()} and ends now
+     *
+     * @return the end, so the next stage can start from it
+     */
+    long record( Stage stage, long start, long samples ) {
+        final long end = System.nanoTime();
+        if (accumulate) {
+            calls.incrementAndGet( stage.ordinal() );
+            nanos.addAndGet( stage.ordinal(), end - start );
+            this.samples.addAndGet( stage.ordinal(), samples );
+        }
+        if (EVENTS != null && EVENTS.isRecording()) {
+            EVENTS.commit( stage, end - start, samples );
+        }
+        return end;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STAGES; i++) {
+            calls.set( i, 0 );
+            nanos.set( i, 0 );
+            samples.set( i, 0 );
+        }
+    }
+
+    /**
+     * @return a table of the stages with the time spent in them, in ms and per sample
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( String.format( "%-18s %8s %10s %12s %10s%n", "stage", "calls", "ms", "samples", "ns/sample" ) );
+        for (final Stage stage : Stage.values()) {
+            final long n = getSamples( stage );
+            sb.append( String.format( "%-18s %8d %10.3f %12d %10.1f%n", stage, getCalls( stage ), getNanos( stage ) / 1e6, n,
+                            n > 0 ? getNanos( stage ) / (double) n : 0.0 ) );
+        }
+        sb.append( String.format( "%-18s %8s %10.3f%n", "total", "", getTotalNanos() / 1e6 ) );
+        return sb.toString();
+    }
+}
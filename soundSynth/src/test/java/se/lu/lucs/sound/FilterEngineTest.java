@@ -0,0 +1,133 @@
+package se.lu.lucs.sound;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import se.lu.lucs.sound.BoutParameters.BreathingType;
+import se.lu.lucs.sound.BoutParameters.FilterEngine;
+import se.lu.lucs.sound.BoutParameters.Formant;
+
+/**
+ * Renders seeded bouts with the {@link FilterEngine#STFT} and the {@link FilterEngine#RESONATOR} filter engine and
+ * checks the spectral distance between them against {@link #MAX_DISTANCE_DB}.
+ *
+ * The distance is the RMS difference of the long-term average spectra in dB, after removing the mean difference, over
+ * the frequencies up to the harmonic ceiling that lie within {@link ResonatorBank#DYNAMIC_RANGE_DB} of the spectral peak.
+ */
+public class FilterEngineTest {
+    public static final double MAX_DISTANCE_DB = 4;
+
+    private static final int SPECTRUM_LENGTH = 2048;
+
+    private static void assertMatchesStft( BoutParameters stft, long seed ) {
+        stft.seed = seed;
+        final BoutParameters resonator = new BoutParameters( stft );
+        resonator.filterEngine = FilterEngine.RESONATOR;
+
+        final double distance = spectralDistance( Generator.generateBoutSamples( stft ), Generator.generateBoutSamples( resonator ), stft );
+        assertTrue( String.format( "spectral distance %.2f dB above %.2f dB", distance, MAX_DISTANCE_DB ), distance <= MAX_DISTANCE_DB );
+    }
+
+    /**
+     * @return the power spectrum in dB, averaged over half overlapping hann windowed frames
+     */
+    private static double[] averageSpectrum( double[] samples ) {
+        final RealFft fft = RealFft.forLength( SPECTRUM_LENGTH );
+        final double[] frame = new double[SPECTRUM_LENGTH];
+        final double[] re = new double[SPECTRUM_LENGTH / 2];
+        final double[] im = new double[SPECTRUM_LENGTH / 2];
+        final double[] power = new double[SPECTRUM_LENGTH / 2];
+        for (int start = 0; start + SPECTRUM_LENGTH <= samples.length; start += SPECTRUM_LENGTH / 2) {
+            for (int i = 0; i < SPECTRUM_LENGTH; i++) {
+                frame[i] = samples[start + i] * (.5 - .5 * Math.cos( 2 * Math.PI * i / SPECTRUM_LENGTH ));
+            }
+            fft.forward( frame, 0, re, im );
+            for (int k = 1; k < power.length; k++) {
+                power[k] += re[k] * re[k] + im[k] * im[k];
+            }
+        }
+        for (int k = 0; k < power.length; k++) {
+            power[k] = 10 * Math.log10( Math.max( power[k], Double.MIN_NORMAL ) );
+        }
+        return power;
+    }
+
+    /**
+     * @return the spectral distance in dB, see the class comment
+     */
+    public static double spectralDistance( double[] reference, double[] samples, BoutParameters p ) {
+        final double[] a = averageSpectrum( reference );
+        final double[] b = averageSpectrum( samples );
+        final int highest = (int) Math.min( a.length, (long) p.maxHarmonicFrequency * SPECTRUM_LENGTH / p.sampleRate );
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 1; k < highest; k++) {
+            max = Math.max( max, a[k] );
+        }
+        double sum = 0;
+        double sumSquares = 0;
+        int count = 0;
+        for (int k = 1; k < highest; k++) {
+            if (a[k] > max - ResonatorBank.DYNAMIC_RANGE_DB) {
+                final double d = b[k] - a[k];
+                sum += d;
+                sumSquares += d * d;
+                count++;
+            }
+        }
+        final double mean = sum / count;
+        return Math.sqrt( Math.max( 0, sumSquares / count - mean * mean ) );
+    }
+
+    @Test
+    public void breathyCall() {
+        final BoutParameters p = new BoutParameters();
+        p.randomVowel = true;
+        p.syllableDuration_mean = 150;
+        p.numberOfSyllables = 4;
+        p.creakyBreathy = .4;
+        p.breathingStrength = .4;
+        p.breathingType = EnumSet.of( BreathingType.DURING );
+        assertMatchesStft( p, 3 );
+    }
+
+    @Test
+    public void creaky() {
+        final BoutParameters p = new BoutParameters();
+        p.randomVowel = true;
+        p.creakyBreathy = -.6;
+        p.megaFormant_strength = 20;
+        assertMatchesStft( p, 2 );
+    }
+
+    @Test
+    public void randomVowel() {
+        final BoutParameters p = new BoutParameters();
+        p.randomVowel = true;
+        assertMatchesStft( p, 0 );
+    }
+
+    @Test
+    public void vowel() {
+        final BoutParameters p = new BoutParameters();
+        final Formant f = new Formant();
+        f.f1_freq = 700;
+        f.f2_freq = 1200;
+        f.f3_freq = 2600;
+        f.f4_freq = 3800;
+        f.f1_amp = 1;
+        f.f2_amp = 1;
+        f.f3_amp = .8;
+        f.f4_amp = .6;
+        f.f1_width = 100;
+        f.f2_width = 100;
+        f.f3_width = 200;
+        f.f4_width = 300;
+        p.exactFormants = f;
+        p.randomVowel = false;
+        assertMatchesStft( p, 1 );
+    }
+}
@@ -0,0 +1,79 @@
+package se.lu.lucs.sound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import se.lu.lucs.sound.BoutParameters.BreathingType;
+import se.lu.lucs.sound.BoutParameters.SynthesisEngine;
+
+/**
+ * Renders seeded bouts in double and in {@link BoutParameters#singlePrecision single precision} and checks the signal to
+ * noise ratio of the single precision render, taking the double precision render as the signal, against
+ * {@link #MIN_SNR_DB}, which is well above the 98 dB of 16 bit PCM.
+ */
+public class PrecisionTest {
+    public static final double MIN_SNR_DB = 110;
+
+    private static void assertSnr( BoutParameters p, long seed ) {
+        p.seed = seed;
+        final double[] reference = Generator.generateBoutSamples( p );
+
+        final BoutParameters single = new BoutParameters( p );
+        single.singlePrecision = true;
+        final double[] samples = Generator.generateBoutSamples( single );
+
+        assertEquals( "length", reference.length, samples.length );
+        final double snr = snr( reference, samples );
+        assertTrue( String.format( "SNR %.1f dB below %.1f dB", snr, MIN_SNR_DB ), snr >= MIN_SNR_DB );
+    }
+
+    /**
+     * @return the ratio of the energy of the reference to the energy of the difference, in dB. Infinite if both are equal
+     */
+    private static double snr( double[] reference, double[] samples ) {
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i < reference.length; i++) {
+            final double d = samples[i] - reference[i];
+            signal += reference[i] * reference[i];
+            noise += d * d;
+        }
+        return 10 * Math.log10( signal / noise );
+    }
+
+    @Test
+    public void breathy() {
+        final BoutParameters p = new BoutParameters();
+        p.creakyBreathy = .5;
+        p.breathingStrength = .5;
+        p.breathingType = EnumSet.of( BreathingType.BEFORE, BreathingType.DURING, BreathingType.AFTER );
+        assertSnr( p, 1 );
+    }
+
+    @Test
+    public void creaky() {
+        final BoutParameters p = new BoutParameters();
+        p.creakyBreathy = -.5;
+        p.subharmDep = 40;
+        p.nSubharm = 2;
+        p.bandLimited = true;
+        assertSnr( p, 2 );
+    }
+
+    @Test
+    public void plain() {
+        assertSnr( new BoutParameters(), 0 );
+    }
+
+    @Test
+    public void wavetable() {
+        final BoutParameters p = new BoutParameters();
+        p.synthesisEngine = SynthesisEngine.WAVETABLE;
+        p.numberOfSyllables = 3;
+        assertSnr( p, 3 );
+    }
+}
@@ -0,0 +1,109 @@
+package se.lu.lucs.sound;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import se.lu.lucs.sound.BoutParameters.BreathingType;
+import se.lu.lucs.sound.BoutParameters.Formant;
+
+/**
+ * Renders seeded, breathing-heavy bouts with breathing filtered by the STFT and with
+ * {@link BoutParameters#spectralBreathing spectral breathing}, and checks the {@link FilterEngineTest#spectralDistance
+ * spectral distance} between them against {@link FilterEngineTest#MAX_DISTANCE_DB} and their level difference against
+ * {@link #MAX_LEVEL_DB}.
+ */
+public class SpectralBreathingTest {
+    public static final double MAX_LEVEL_DB = 1;
+
+    private static void assertMatchesStft( BoutParameters stft, long seed ) {
+        stft.seed = seed;
+        final BoutParameters spectral = new BoutParameters( stft );
+        spectral.spectralBreathing = true;
+
+        final double[] reference = Generator.generateBoutSamples( stft );
+        final double[] samples = Generator.generateBoutSamples( spectral );
+        final double distance = FilterEngineTest.spectralDistance( reference, samples, stft );
+        final double level = level( reference, samples );
+        assertTrue( String.format( "spectral distance %.2f dB above %.2f dB", distance, FilterEngineTest.MAX_DISTANCE_DB ),
+                        distance <= FilterEngineTest.MAX_DISTANCE_DB );
+        assertTrue( String.format( "level differs by %+.2f dB, more than %.2f dB", level, MAX_LEVEL_DB ), Math.abs( level ) <= MAX_LEVEL_DB );
+    }
+
+    /**
+     * @return the level of samples relative to reference in dB
+     */
+    private static double level( double[] reference, double[] samples ) {
+        double a = 0;
+        for (final double s : reference) {
+            a += s * s;
+        }
+        double b = 0;
+        for (final double s : samples) {
+            b += s * s;
+        }
+        return 10 * Math.log10( b / samples.length / (a / reference.length) );
+    }
+
+    @Test
+    public void breathy() {
+        final BoutParameters p = new BoutParameters();
+        p.creakyBreathy = .5;
+        p.breathingStrength = .6;
+        p.breathingType = EnumSet.of( BreathingType.BEFORE, BreathingType.DURING, BreathingType.AFTER );
+        p.breathing_dur = 300;
+        assertMatchesStft( p, 1 );
+    }
+
+    /**
+     * The laugh of the TonSchmiede
+     */
+    @Test
+    public void laugh() {
+        final BoutParameters p = new BoutParameters();
+        p.numberOfSyllables = 6;
+        p.pauseDuration_mean = 50;
+        p.var_bw_syllables = 20;
+        p.pitch_start = 360;
+        p.pitch_anchor = 210;
+        p.pitch_end = 140;
+        p.pitch_anchor_location = 27;
+        p.creakyBreathy = -.1;
+        p.attackLen = 10;
+        p.subharmDep = 30;
+        p.breathingType = EnumSet.of( BreathingType.DURING, BreathingType.AFTER );
+        p.breathingStrength = .8;
+        p.breathingStrength_diff = -1.5;
+        p.breathing_dur = 30;
+        p.randomVowel = false;
+        final Formant f = new Formant();
+        f.f1_freq = 700;
+        f.f2_freq = 1400;
+        f.f3_freq = 2800;
+        f.f4_freq = 3500;
+        f.f1_amp = .7;
+        f.f2_amp = .7;
+        f.f3_amp = .7;
+        f.f4_amp = .7;
+        f.f1_width = 100;
+        f.f2_width = 100;
+        f.f3_width = 100;
+        f.f4_width = 100;
+        p.exactFormants = f;
+        p.formantStrength = 40;
+        assertMatchesStft( p, 2 );
+    }
+
+    /**
+     * Breathing only, the voiced part is faded out completely
+     */
+    @Test
+    public void whisper() {
+        final BoutParameters p = new BoutParameters();
+        p.breathingStrength = 1;
+        p.breathingType = EnumSet.of( BreathingType.DURING );
+        assertMatchesStft( p, 0 );
+    }
+}
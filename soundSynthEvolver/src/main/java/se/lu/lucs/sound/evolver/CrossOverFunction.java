@@ -1,8 +1,15 @@
 package se.lu.lucs.sound.evolver;
 
 import se.lu.lucs.sound.BoutParameters;
+import se.lu.lucs.sound.RandomStream;
 
 @FunctionalInterface
 public interface CrossOverFunction {
     BoutParameters[] crossOver( BoutParameters a, BoutParameters b );
+
+    /**
+     * Sets the stream all random decisions of this function are drawn from
+     */
+    default void setRandom( RandomStream random ) {
+    }
 }
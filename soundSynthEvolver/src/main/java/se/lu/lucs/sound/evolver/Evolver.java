@@ -7,7 +7,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
 import java.util.stream.Collectors;
 
 import javax.sound.sampled.AudioFileFormat;
@@ -21,8 +20,12 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import org.apache.commons.math3.exception.OutOfRangeException;
 
 import se.lu.lucs.sound.AcousticParameters;
+import se.lu.lucs.sound.BoutListener;
 import se.lu.lucs.sound.BoutParameters;
+import se.lu.lucs.sound.BoutPlan;
 import se.lu.lucs.sound.Generator;
+import se.lu.lucs.sound.RandomStream;
+import se.lu.lucs.sound.RenderQuality;
 
 public class Evolver implements AcousticParameters {
     public static class Genome {
@@ -31,6 +34,11 @@ public class Evolver implements AcousticParameters {
         public boolean isEvaluate;
         public List<Double> fitness;
 
+        /**
+         * The stream the next evaluation renders from, split off the evolver's stream before the (parallel) evaluation
+         */
+        RandomStream random;
+
         Genome() {
             this( new BoutParameters() );
         }
@@ -64,15 +72,13 @@ public class Evolver implements AcousticParameters {
 
     public final static float DEFAULT_MUTATION_PROBABILITY = .5f;
 
-    private final static Random RANDOM = new Random();
-
     public static final float DEFAULT_CROSSOVER_PROBABILTY = .9f;
 
     public static final float DEFAULT_MUTATE_PROBABILITY = .1f;
 
     public static final float DEFAULT_ELITE_SIZE = .4f;
 
-    private final static AudioFormat FORMAT = new AudioFormat( 44100, 16, 1, true, false );
+    private final static AudioFormat FORMAT = new AudioFormat( DEFAULT_SAMPLE_RATE, 16, 1, true, false );
 
     public static void main( String[] args ) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
 
@@ -91,7 +97,7 @@ public class Evolver implements AcousticParameters {
         System.out.println( e.getBest().parameters );
         final List<Double> curve = Generator.generateBout( e.getBest().parameters );
 
-        playCurve( curve, (long) (curve.size() / 44.1) );
+        playCurve( curve, (long) (curve.size() / (FORMAT.getSampleRate() / 1000)) );
 
         final AudioInputStream s = Generator.convertAmplitude( curve, FORMAT );
 
@@ -130,37 +136,24 @@ public class Evolver implements AcousticParameters {
 
     }
 
-    private static float random( float min, float max ) {
-        return (float) (min + RANDOM.nextDouble() * (max - min));
-    }
-
-    private static Genome rouletteWheel( List<Genome> population2, int eliteBoundary ) {
-
-        float totalWeight = 0;
-        for (int i = 0; i < eliteBoundary; i++) {
-            final Double w = population2.get( i ).fitness();
-            assert w >= 0 : "negative weights not allowed";
-            // increase sum
-            totalWeight += w;
-        }
-        if (totalWeight > 0) {
-            // roulette wheel selection
-            double r = RANDOM.nextDouble() * totalWeight;
-            int i = 0;
-            while (i < eliteBoundary && r > 0) {
-                r -= population2.get( i ).fitness();
-                i++;
-            }
-            return population2.get( i - 1 );
-        }
-        else {
-            throw new IllegalStateException( "all fitnesses are zero" );
+    /**
+     * Plans the next rendering of a genome in the given quality, from its seed if it has one and from the stream assigned
+     * for this evaluation otherwise
+     */
+    private static BoutPlan plan( Genome g, RenderQuality quality ) {
+        final BoutParameters p = quality.derive( g.parameters );
+        if (p.seed != null || g.random == null) {
+            return Generator.planBout( p );
         }
-
+        return Generator.planBout( p, g.random );
     }
 
+    private final RandomStream random = new RandomStream();
+
     private int evaluationSamples;
 
+    private int draftGenerations;
+
     private float crossoverProbability;
 
     private float mutateProbability;
@@ -195,7 +188,9 @@ public class Evolver implements AcousticParameters {
         this.fitnessFunction = fitnessFunction;
 
         mutationFunction = new MutateAll();
+        mutationFunction.setRandom( random.split() );
         crossOverFunction = new RandomCrossOver();
+        crossOverFunction.setRandom( random.split() );
         generator = this::randomBout;
 
         while (population.size() < populationSize) {
@@ -237,7 +232,7 @@ public class Evolver implements AcousticParameters {
             if (eliteBoundary > 0 && (mutateProbability > 0f || crossoverProbability > 0f)) {
                 temp[0] = rouletteWheel( population, eliteBoundary );
                 temp[1] = rouletteWheel( population, eliteBoundary );
-                if (Math.random() > 1f - crossoverProbability) {
+                if (random.nextDouble() > 1f - crossoverProbability) {
 //                  System.out.println( "Crossing " + population.indexOf( temp[0] ) + " and " + population.indexOf( temp[1] ) );
                     final BoutParameters[] tempBout = crossOverFunction.crossOver( temp[0].parameters, temp[1].parameters );
                     temp[0] = new Genome( tempBout[0] );
@@ -250,7 +245,7 @@ public class Evolver implements AcousticParameters {
                     temp[1] = new Genome( temp[1] );
                 }
 
-                if (RANDOM.nextDouble() > 1f - mutateProbability) {
+                if (random.nextDouble() > 1f - mutateProbability) {
                     addMe = true;
                     mutationFunction.mutate( temp[0].parameters );
                     mutationFunction.mutate( temp[1].parameters );
@@ -275,42 +270,63 @@ public class Evolver implements AcousticParameters {
 
     }
 
-    private void evaluate( Genome g ) {
+    /**
+     * Evaluates all genomes that need it. Every round renders one more sample of each genome that is still being sampled,
+     * all of them in one batch, and scores each bout as soon as it is rendered
+     */
+    private void evaluate( List<Genome> genomes, RenderQuality quality ) {
+        List<Genome> sampling = genomes.stream().filter( g -> !g.isEvaluate || alwaysEvaluate ).collect( Collectors.toList() );
+        final List<Genome> evaluated = sampling;
+
+        // for negative sample counts, sampling stops early once the fitness does not change anymore
+        final Double[] previous = new Double[sampling.size()];
+        for (int i = 0; i < previous.length; i++) {
+            final List<Double> fitness = sampling.get( i ).fitness;
+            previous[i] = fitness.isEmpty() ? Double.NaN : fitness.get( fitness.size() - 1 );
+        }
 
-        if (!g.isEvaluate || alwaysEvaluate) {
+        for (int round = 0; round < Math.abs( evaluationSamples ) && !sampling.isEmpty(); round++) {
+            final List<Genome> batch = sampling;
+            final boolean[] done = new boolean[batch.size()];
+            final List<BoutPlan> plans = batch.stream().map( g -> plan( g, quality ) ).collect( Collectors.toList() );
+            Generator.renderBouts( plans, new BoutListener() {
+                @Override
+                public void failed( int index, RuntimeException e ) {
+                    System.err.println( e.getMessage() );
+                    batch.get( index ).fitness.clear();
+                    done[index] = true;
+                }
 
-            try {
-                if (evaluationSamples > 0) {
-                    for (int i = 0; i < evaluationSamples; i++) {
-                        final List<Double> amplitude = Generator.generateBout( g.parameters );
-                        g.fitness.add( fitnessFunction.evaluate( amplitude ) );
+                @Override
+                public void rendered( int index, double[] samples ) {
+                    final Double n;
+                    try {
+                        n = fitnessFunction.evaluate( samples, plans.get( index ).getSampleRate() );
                     }
-                }
-                else {
-                    Double p = g.fitness.isEmpty() ? Double.NaN : g.fitness.get( g.fitness.size() - 1 );
-                    int iter = 0;
-                    while (iter < Math.abs( evaluationSamples )) {
-                        final List<Double> amplitude = Generator.generateBout( g.parameters );
-                        final Double n = fitnessFunction.evaluate( amplitude );
-                        g.fitness.add( n );
-                        if (p == n) {
-                            break;
-                        }
-                        p = n;
-
-                        iter++;
+                    catch (final RuntimeException e) {
+                        failed( index, e );
+                        return;
+                    }
+                    batch.get( index ).fitness.add( n );
+                    if (evaluationSamples < 0) {
+                        done[index] = previous[index] == n;
+                        previous[index] = n;
                     }
-//                    System.out.println( "Stopped after " + iter );
+                }
+            } );
+
+            // the batch has completed, so the flags set by the render threads are visible here
+            final List<Genome> next = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (!done[i]) {
+                    previous[next.size()] = previous[i];
+                    next.add( batch.get( i ) );
                 }
             }
-            catch (final Exception e) {
-                System.err.println( e.getMessage() );
-                g.fitness.clear();
-            }
-            finally {
-                g.isEvaluate = true;
-            }
+            sampling = next;
         }
+
+        evaluated.forEach( g -> g.isEvaluate = true );
     }
 
     public void evolve( int maxIterations, float targetFitnessThreshold ) {
@@ -320,20 +336,33 @@ public class Evolver implements AcousticParameters {
         Double globalDelta = 0.0;
         while (true) {
             System.out.println( "Starting iteration " + iter );
-            //Evaluate all genomes
-            population.parallelStream().forEach( g -> evaluate( g ) );
+            //Evaluate all genomes. The streams are split off sequentially, so the result does not depend on the scheduling
+            for (final Genome g : population) {
+                g.random = random.split();
+            }
+            if (iter > 0 && iter == draftGenerations) {
+                // draft and final fitness are not comparable, so start over with the final renders
+                for (final Genome g : population) {
+                    g.fitness.clear();
+                    g.isEvaluate = false;
+                }
+                bestFitness = 0.0;
+                globalDelta = 0.0;
+            }
+            evaluate( population, iter < draftGenerations ? RenderQuality.DRAFT : RenderQuality.FINAL );
 
             advancePopulation();
 
             final Double newFitness = population.get( 0 ).fitness();
-            final Double delta = iter > 0 ? newFitness - bestFitness : 0;
+            final Double delta = iter > 0 && iter != draftGenerations ? newFitness - bestFitness : 0;
             System.out.println( "delta " + delta );
             globalDelta += delta;
             System.out.println( "globalDelta " + globalDelta );
             bestFitness = newFitness;
             System.out.println( "Max fitness is " + bestFitness );
 
-            fitnessReached = population.get( 0 ).fitness() >= targetFitnessThreshold;
+            // the threshold is meant for the final fitness, which draft fitness says nothing about
+            fitnessReached = iter >= draftGenerations && population.get( 0 ).fitness() >= targetFitnessThreshold;
             iter++;
 
             if (fitnessReached || iter >= maxIterations) {
@@ -363,6 +392,10 @@ public class Evolver implements AcousticParameters {
         return population;
     }
 
+    private float random( float min, float max ) {
+        return (float) (min + random.nextDouble() * (max - min));
+    }
+
     private BoutParameters randomBout() {
         final BoutParameters parameters = new BoutParameters();
 //      parameters.numberOfSyllables = (int) random( MIN_SYLLABLES, MAX_SYLLABLES );
@@ -391,7 +424,7 @@ public class Evolver implements AcousticParameters {
 //      p.megaFormant_sd = (int) random(MIN_PITCH, MAX_ME);
         parameters.megaFormant_strength = (int) random( MIN_MEGA_FORMANT_STRENGTH, MAX_MEGA_FORMANT_STRENGTH );
 //      public Formant exactFormants = null;
-        parameters.femaleVoice = RANDOM.nextBoolean();
+        parameters.femaleVoice = random.nextBoolean();
 //      public boolean randomVowel = true;
         parameters.nSubharm = (int) random( MIN_SUBHARMONICS, MAX_SUBHARMONICS );
         parameters.subharmDep = (int) random( MIN_SUBHARMONICS_STRENGTH, MAX_SUBHARMONICS_STRENGTH );
@@ -413,12 +446,38 @@ public class Evolver implements AcousticParameters {
         return g;
     }
 
+    private Genome rouletteWheel( List<Genome> population2, int eliteBoundary ) {
+
+        float totalWeight = 0;
+        for (int i = 0; i < eliteBoundary; i++) {
+            final Double w = population2.get( i ).fitness();
+            assert w >= 0 : "negative weights not allowed";
+            // increase sum
+            totalWeight += w;
+        }
+        if (totalWeight > 0) {
+            // roulette wheel selection
+            double r = random.nextDouble() * totalWeight;
+            int i = 0;
+            while (i < eliteBoundary && r > 0) {
+                r -= population2.get( i ).fitness();
+                i++;
+            }
+            return population2.get( i - 1 );
+        }
+        else {
+            throw new IllegalStateException( "all fitnesses are zero" );
+        }
+
+    }
+
     public void setAlwaysEvaluate( boolean alwaysEvaluate ) {
         this.alwaysEvaluate = alwaysEvaluate;
     }
 
     public void setCrossOverFunction( CrossOverFunction crossOverfunction ) {
         crossOverFunction = crossOverfunction;
+        crossOverFunction.setRandom( random.split() );
     }
 
     /**
@@ -434,6 +493,21 @@ public class Evolver implements AcousticParameters {
         this.crossoverProbability = crossoverProbability;
     }
 
+    /**
+     * Evaluates the first generations with {@link RenderQuality#DRAFT draft} renders, which are much faster to render
+     * and to score. The fitness function gets the draft sample rate along with every draft, see
+     * {@link FitnessFunction#evaluate(double[], int)}. All genomes are re-evaluated in final quality once the draft
+     * generations are over, and the target fitness of {@link #evolve(int, float)} is only checked from then on
+     *
+     * @param draftGenerations 0, the default, to always render in final quality
+     */
+    public void setDraftGenerations( int draftGenerations ) {
+        if (draftGenerations < 0) {
+            throw new IllegalArgumentException( "number of draft generations must be >= 0" );
+        }
+        this.draftGenerations = draftGenerations;
+    }
+
     /**
      * Sets the percentage [0,1] that is NOT culled after the evaluation,
      * i.e. 1 keeps the whole population and no new individuals will be inserted,
@@ -478,6 +552,7 @@ public class Evolver implements AcousticParameters {
 
     public void setMutationFunction( MutationFunction mutationFunction ) {
         this.mutationFunction = mutationFunction;
+        mutationFunction.setRandom( random.split() );
     }
 
     public void setPopulation( List<BoutParameters> selected ) {
@@ -508,4 +583,16 @@ public class Evolver implements AcousticParameters {
         this.populationSize = populationSize;
     }
 
+    /**
+     * Reseeds the evolver and its genetic operators, so that a run started from the same population is reproducible.
+     * Note that the initial random population is drawn when the evolver is constructed
+     *
+     * @param seed
+     */
+    public void setSeed( long seed ) {
+        random.setSeed( seed );
+        mutationFunction.setRandom( random.split() );
+        crossOverFunction.setRandom( random.split() );
+    }
+
 }
@@ -2,6 +2,8 @@ package se.lu.lucs.sound.evolver;
 
 import java.util.List;
 
+import se.lu.lucs.sound.Generator;
+
 /**
  * A functional interface to provide a fitness function for amplitudes
  * Note that the evaluate function is required to return higher values
@@ -12,5 +14,22 @@ import java.util.List;
  */
 @FunctionalInterface
 public interface FitnessFunction {
+    /**
+     * Evaluates a primitive sample buffer. Implementations that work on arrays anyway
+     * should override this to avoid boxing every sample
+     */
+    default Double evaluate( double[] amplitude ) {
+        return evaluate( Generator.toList( amplitude ) );
+    }
+
+    /**
+     * Evaluates a bout rendered at the given sample rate, which may differ from the rate of the target, e.g. for
+     * {@link se.lu.lucs.sound.RenderQuality#DRAFT draft} renders. Functions that compare with a target must override this
+     * and compare at a common rate; the default ignores the rate
+     */
+    default Double evaluate( double[] amplitude, int sampleRate ) {
+        return evaluate( amplitude );
+    }
+
     Double evaluate( List<Double> amplitude );
 }
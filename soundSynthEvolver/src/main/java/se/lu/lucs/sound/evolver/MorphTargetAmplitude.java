@@ -21,6 +21,9 @@ import com.fastdtw.timeseries.TimeSeriesBase;
 import com.fastdtw.timeseries.TimeSeriesBase.Builder;
 import com.fastdtw.util.Distances;
 
+import se.lu.lucs.sound.AcousticParameters;
+import se.lu.lucs.sound.Resampler;
+
 /**
  * This class does a FastDTW on the amplitude and a supplied target amplitude
  * from a file. The returned fitness is the inverse of the distance returned by the DTW
@@ -30,15 +33,24 @@ import com.fastdtw.util.Distances;
  */
 public class MorphTargetAmplitude implements FitnessFunction {
     private final TimeSeries amplitude;
+    private final int sampleRate;
 
     public MorphTargetAmplitude( File sourceWav ) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        this( sourceWav, AcousticParameters.DEFAULT_SAMPLE_RATE );
+    }
+
+    /**
+     * @param sourceWav the target, recorded at the sample rate the candidates are rendered at
+     * @param sampleRate
+     */
+    public MorphTargetAmplitude( File sourceWav, int sampleRate ) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
         final AudioInputStream s = AudioSystem.getAudioInputStream( sourceWav );
         final AudioFormat format = s.getFormat();
         if (format.getChannels() > 1) {
             throw new IllegalStateException( "class only supports mono streams" );
         }
-        if (format.getSampleRate() != 44100.0) {
-            throw new IllegalStateException( "sample rate must be 44kHz, not " + format.getSampleRate() );
+        if (format.getSampleRate() != sampleRate) {
+            throw new IllegalStateException( "sample rate must be " + sampleRate + " Hz, not " + format.getSampleRate() );
         }
         if (format.getSampleSizeInBits() != 16) {
             throw new IllegalStateException( "class only supports 16-bit samples" );
@@ -73,7 +85,7 @@ public class MorphTargetAmplitude implements FitnessFunction {
 
         final byte[] audioBytes = audioBuffer.array();
 
-        final AudioFormat format2 = new AudioFormat( 44100, 16, 1, true, false );
+        final AudioFormat format2 = new AudioFormat( sampleRate, 16, 1, true, false );
         final SourceDataLine audioSource = AudioSystem.getSourceDataLine( format2 );
         audioSource.open( format2 );
         audioSource.start();
@@ -82,9 +94,18 @@ public class MorphTargetAmplitude implements FitnessFunction {
         audioSource.close();
 
         amplitude = builder.build();
+        this.sampleRate = sampleRate;
         s.close();
     }
 
+    /**
+     * Resamples the candidate to the rate of the target, so both time series advance at the same rate
+     */
+    @Override
+    public Double evaluate( double[] amplitude, int sampleRate ) {
+        return evaluate( Resampler.resample( amplitude, sampleRate, this.sampleRate ) );
+    }
+
     @Override
     public Double evaluate( List<Double> amplitude ) {
         Builder builder = TimeSeriesBase.builder();
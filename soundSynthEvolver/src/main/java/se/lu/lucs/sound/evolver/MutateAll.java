@@ -4,13 +4,16 @@ import org.apache.commons.math3.distribution.NormalDistribution;
 
 import se.lu.lucs.sound.AcousticParameters;
 import se.lu.lucs.sound.BoutParameters;
+import se.lu.lucs.sound.RandomStream;
 
 public class MutateAll implements MutationFunction {
     private static final double DEFAULT_MUTATION_STRENGTH = 0.1;
     protected NormalDistribution normalDistribution;
+    private RandomStream random;
 
     public MutateAll() {
-        normalDistribution = new NormalDistribution( 0, DEFAULT_MUTATION_STRENGTH );
+        random = new RandomStream();
+        normalDistribution = new NormalDistribution( random, 0, DEFAULT_MUTATION_STRENGTH );
     }
 
     @Override
@@ -68,8 +71,14 @@ public class MutateAll implements MutationFunction {
     @Override
     public void setMutationStrength( double sd ) {
         if (sd != normalDistribution.getStandardDeviation()) {
-            normalDistribution = new NormalDistribution( 0, sd );
+            normalDistribution = new NormalDistribution( random, 0, sd );
         }
     }
 
+    @Override
+    public void setRandom( RandomStream random ) {
+        this.random = random;
+        normalDistribution = new NormalDistribution( random, 0, normalDistribution.getStandardDeviation() );
+    }
+
 }
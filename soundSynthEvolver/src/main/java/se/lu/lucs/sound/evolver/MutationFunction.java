@@ -3,6 +3,7 @@ package se.lu.lucs.sound.evolver;
 import org.apache.commons.math3.distribution.RealDistribution;
 
 import se.lu.lucs.sound.BoutParameters;
+import se.lu.lucs.sound.RandomStream;
 
 public interface MutationFunction {
     void mutate( BoutParameters b );
@@ -12,4 +13,10 @@ public interface MutationFunction {
     }
 
     void setMutationStrength( double f );
+
+    /**
+     * Sets the stream all random decisions of this function are drawn from
+     */
+    default void setRandom( RandomStream random ) {
+    }
 }
@@ -1,11 +1,10 @@
 package se.lu.lucs.sound.evolver;
 
-import java.util.Random;
-
 import se.lu.lucs.sound.BoutParameters;
+import se.lu.lucs.sound.RandomStream;
 
 public class RandomCrossOver implements CrossOverFunction {
-    private final static Random RANDOM = new Random();
+    private RandomStream random = new RandomStream();
 
     @Override
     public BoutParameters[] crossOver( BoutParameters p1, BoutParameters p2 ) {
@@ -13,7 +12,7 @@ public class RandomCrossOver implements CrossOverFunction {
         final BoutParameters o1 = new BoutParameters( p1 );
         final BoutParameters o2 = new BoutParameters( p2 );
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.numberOfSyllables = p1.numberOfSyllables;
             o2.numberOfSyllables = p2.numberOfSyllables;
         }
@@ -22,7 +21,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.numberOfSyllables = p1.numberOfSyllables;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.var_bw_syllables = p1.var_bw_syllables;
             o2.var_bw_syllables = p2.var_bw_syllables;
         }
@@ -31,7 +30,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.var_bw_syllables = p1.var_bw_syllables;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.pitch_start = p1.pitch_start;
             o2.pitch_start = p2.pitch_start;
         }
@@ -40,7 +39,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.pitch_start = p1.pitch_start;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.pitch_anchor = p1.pitch_anchor;
             o2.pitch_anchor = p2.pitch_anchor;
         }
@@ -49,7 +48,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.pitch_anchor = p1.pitch_anchor;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.pitch_end = p1.pitch_end;
             o2.pitch_end = p2.pitch_end;
         }
@@ -58,7 +57,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.pitch_end = p1.pitch_end;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.pitch_anchor_location = p1.pitch_anchor_location;
             o2.pitch_anchor_location = p2.pitch_anchor_location;
         }
@@ -67,7 +66,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.pitch_anchor_location = p1.pitch_anchor_location;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.attackLen = p1.attackLen;
             o2.attackLen = p2.attackLen;
         }
@@ -76,7 +75,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.attackLen = p1.attackLen;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.jitterDep = p1.jitterDep;
             o2.jitterDep = p2.jitterDep;
         }
@@ -85,7 +84,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.jitterDep = p1.jitterDep;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.vibratoLen = p1.vibratoLen;
             o2.vibratoLen = p2.vibratoLen;
         }
@@ -94,7 +93,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.vibratoLen = p1.vibratoLen;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.vibratoDep = p1.vibratoDep;
             o2.vibratoDep = p2.vibratoDep;
         }
@@ -103,7 +102,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.vibratoDep = p1.vibratoDep;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.shimmerDep = p1.shimmerDep;
             o2.shimmerDep = p2.shimmerDep;
         }
@@ -112,7 +111,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.shimmerDep = p1.shimmerDep;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.driftLen = p1.driftLen;
             o2.driftLen = p2.driftLen;
         }
@@ -121,7 +120,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.driftLen = p1.driftLen;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.driftDep = p1.driftDep;
             o2.driftDep = p2.driftDep;
         }
@@ -130,7 +129,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.driftDep = p1.driftDep;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.creakyBreathy = p1.creakyBreathy;
             o2.creakyBreathy = p2.creakyBreathy;
         }
@@ -139,7 +138,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.creakyBreathy = p1.creakyBreathy;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.rolloff = p1.rolloff;
             o2.rolloff = p2.rolloff;
         }
@@ -148,7 +147,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.rolloff = p1.rolloff;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.spectralSlope = p1.spectralSlope;
             o2.spectralSlope = p2.spectralSlope;
         }
@@ -157,7 +156,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.spectralSlope = p1.spectralSlope;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.formantStrength = p1.formantStrength;
             o2.formantStrength = p2.formantStrength;
         }
@@ -166,7 +165,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.formantStrength = p1.formantStrength;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.spectralNoise_strength = p1.spectralNoise_strength;
             o2.spectralNoise_strength = p2.spectralNoise_strength;
         }
@@ -175,7 +174,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.spectralNoise_strength = p1.spectralNoise_strength;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.megaFormant_mean = p1.megaFormant_mean;
             o2.megaFormant_mean = p2.megaFormant_mean;
         }
@@ -184,7 +183,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.megaFormant_mean = p1.megaFormant_mean;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.megaFormant_sd = p1.megaFormant_sd;
             o2.megaFormant_sd = p2.megaFormant_sd;
         }
@@ -193,7 +192,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.megaFormant_sd = p1.megaFormant_sd;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.megaFormant_strength = p1.megaFormant_strength;
             o2.megaFormant_strength = p2.megaFormant_strength;
         }
@@ -203,7 +202,7 @@ public class RandomCrossOver implements CrossOverFunction {
         }
 //        public Formant exactFormants = null;
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.femaleVoice = p1.femaleVoice;
             o2.femaleVoice = p2.femaleVoice;
         }
@@ -213,7 +212,7 @@ public class RandomCrossOver implements CrossOverFunction {
         }
 //        public boolean randomVowel = true;
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.nSubharm = p1.nSubharm;
             o2.nSubharm = p2.nSubharm;
         }
@@ -222,7 +221,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.nSubharm = p1.nSubharm;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.subharmDep = p1.subharmDep;
             o2.subharmDep = p2.subharmDep;
         }
@@ -233,7 +232,7 @@ public class RandomCrossOver implements CrossOverFunction {
 //        public int lenRarFilter = 64;
 //        public double spanFilter = 0.1;
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.breathingStrength = p1.breathingStrength;
             o2.breathingStrength = p2.breathingStrength;
         }
@@ -242,7 +241,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.breathingStrength = p1.breathingStrength;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.breathingStrength_diff = p1.breathingStrength_diff;
             o2.breathingStrength_diff = p2.breathingStrength_diff;
         }
@@ -251,7 +250,7 @@ public class RandomCrossOver implements CrossOverFunction {
             o2.breathingStrength_diff = p1.breathingStrength_diff;
         }
 
-        if (RANDOM.nextBoolean()) {
+        if (random.nextBoolean()) {
             o1.breathing_dur = p1.breathing_dur;
             o2.breathing_dur = p2.breathing_dur;
         }
@@ -264,4 +263,8 @@ public class RandomCrossOver implements CrossOverFunction {
         return new BoutParameters[] { o1, o2 };
     }
 
+    @Override
+    public void setRandom( RandomStream random ) {
+        this.random = random;
+    }
 }
@@ -7,15 +7,17 @@ import java.util.stream.DoubleStream;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
 
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import se.lu.lucs.sound.Kernels;
 
 public class SpectogramCorrelation extends SpectogramFitness {
-    private final static PearsonsCorrelation PEARSON = new PearsonsCorrelation();
-
     public SpectogramCorrelation( File file ) throws UnsupportedAudioFileException, IOException {
         super( file );
     }
 
+    public SpectogramCorrelation( File file, int sampleRate ) throws UnsupportedAudioFileException, IOException {
+        super( file, sampleRate );
+    }
+
     @Override
     protected Double evaluateSpectogram( List<List<Double>> target, List<List<Double>> candidate ) {
         if (target.isEmpty() || candidate.isEmpty()) {
@@ -61,7 +63,7 @@ public class SpectogramCorrelation extends SpectogramFitness {
                 continue;
             }
 
-            final double cor = PEARSON.correlation( x, y );
+            final double cor = Kernels.get().correlation( x, y, x.length );
             if (Double.isNaN( cor )) {
 //                skipped++;
                 continue;
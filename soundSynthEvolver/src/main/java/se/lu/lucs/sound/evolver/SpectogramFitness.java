@@ -5,18 +5,18 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
-import org.apache.commons.math3.complex.Complex;
-
 import se.lu.lucs.sound.AcousticParameters;
-import se.lu.lucs.sound.Generator;
+import se.lu.lucs.sound.RealFft;
+import se.lu.lucs.sound.Resampler;
 
 public abstract class SpectogramFitness implements FitnessFunction {
     private final static int WINDOW_LENGTH = AcousticParameters.DEFAULT_WINDOW_LENGTH;
@@ -25,15 +25,17 @@ public abstract class SpectogramFitness implements FitnessFunction {
     private static List<List<Double>> generateSpectogram( double[] ampl ) {
         final double delta = WINDOW_LENGTH - OVERLAP * WINDOW_LENGTH / 100.0;
         final List<List<Double>> spectrum = new ArrayList<>();
+        final RealFft fft = RealFft.forLength( WINDOW_LENGTH );
+        final double[] re = new double[WINDOW_LENGTH / 2];
+        final double[] im = new double[WINDOW_LENGTH / 2];
         int frameOffset = 0;
         while (frameOffset < ampl.length - WINDOW_LENGTH) {
 
-            final double[] frame = Arrays.copyOfRange( ampl, frameOffset, frameOffset + WINDOW_LENGTH );
-            final List<Complex> frameSpectrum = Generator.fft( frame );
+            fft.forward( ampl, frameOffset, re, im );
 
-            final List<Double> realFrameSpectrum = new ArrayList();
-            for (final Complex c : frameSpectrum) {
-                realFrameSpectrum.add( Math.abs( c.getReal() ) );
+            final List<Double> realFrameSpectrum = new ArrayList<>( re.length );
+            for (final double r : re) {
+                realFrameSpectrum.add( Math.abs( r ) );
             }
             spectrum.add( realFrameSpectrum );
             frameOffset += delta;
@@ -42,13 +44,20 @@ public abstract class SpectogramFitness implements FitnessFunction {
     }
 
     public static double[] loadFile( File sourceWav ) throws UnsupportedAudioFileException, IOException {
+        return loadFile( sourceWav, AcousticParameters.DEFAULT_SAMPLE_RATE );
+    }
+
+    /**
+     * Loads a target recorded at the sample rate the candidates are rendered at
+     */
+    public static double[] loadFile( File sourceWav, int sampleRate ) throws UnsupportedAudioFileException, IOException {
         final AudioInputStream s = AudioSystem.getAudioInputStream( sourceWav );
         final AudioFormat format = s.getFormat();
         if (format.getChannels() > 1) {
             throw new IllegalStateException( "class only supports mono streams" );
         }
-        if (format.getSampleRate() != 44100.0) {
-            throw new IllegalStateException( "sample rate must be 44kHz, not " + format.getSampleRate() );
+        if (format.getSampleRate() != sampleRate) {
+            throw new IllegalStateException( "sample rate must be " + sampleRate + " Hz, not " + format.getSampleRate() );
         }
         if (format.getSampleSizeInBits() != 16) {
             throw new IllegalStateException( "class only supports 16-bit samples" );
@@ -93,23 +102,52 @@ public abstract class SpectogramFitness implements FitnessFunction {
 
     }
 
+    private final double[] target;
+    private final int sampleRate;
     private final List<List<Double>> targetSpectogram;
 
+    /**
+     * Spectograms of the target resampled to the rates of candidates rendered at other rates, so that frames cover the
+     * same time and bins the same frequencies
+     */
+    private final Map<Integer, List<List<Double>>> resampledSpectograms = new ConcurrentHashMap<>();
+
     public SpectogramFitness( File sourceWav ) throws UnsupportedAudioFileException, IOException {
+        this( sourceWav, AcousticParameters.DEFAULT_SAMPLE_RATE );
+    }
+
+    /**
+     * @param sourceWav the target, recorded at the sample rate the candidates are rendered at
+     * @param sampleRate
+     */
+    public SpectogramFitness( File sourceWav, int sampleRate ) throws UnsupportedAudioFileException, IOException {
 
-        targetSpectogram = generateSpectogram( loadFile( sourceWav ) );
+        target = loadFile( sourceWav, sampleRate );
+        this.sampleRate = sampleRate;
+        targetSpectogram = generateSpectogram( target );
 
     }
 
     @Override
-    public Double evaluate( List<Double> amplitude ) {
-        final double[] am = new double[amplitude.size()];
-        for (int i = 0; i < am.length; i++) {
-            am[i] = amplitude.get( i );
+    public Double evaluate( double[] amplitude ) {
+        return evaluate( amplitude, targetSpectogram );
+    }
+
+    /**
+     * Compares with the spectogram of the target resampled to the given rate
+     */
+    @Override
+    public Double evaluate( double[] amplitude, int sampleRate ) {
+        if (sampleRate == this.sampleRate) {
+            return evaluate( amplitude );
         }
-        final List<List<Double>> candidateSpectogram = generateSpectogram( am );
+        return evaluate( amplitude,
+                        resampledSpectograms.computeIfAbsent( sampleRate, r -> generateSpectogram( Resampler.resample( target, this.sampleRate, r ) ) ) );
+    }
+
+    private Double evaluate( double[] amplitude, List<List<Double>> targetSpectogram ) {
+        final List<List<Double>> candidateSpectogram = generateSpectogram( amplitude );
 
-        List<List<Double>> targetSpectogram = this.targetSpectogram;
         if (candidateSpectogram.size() > targetSpectogram.size()) {
             targetSpectogram = new ArrayList( targetSpectogram );
             matchLength( targetSpectogram, candidateSpectogram.size() );
@@ -122,5 +160,14 @@ public abstract class SpectogramFitness implements FitnessFunction {
         return evaluateSpectogram( targetSpectogram, candidateSpectogram );
     }
 
+    @Override
+    public Double evaluate( List<Double> amplitude ) {
+        final double[] am = new double[amplitude.size()];
+        for (int i = 0; i < am.length; i++) {
+            am[i] = amplitude.get( i );
+        }
+        return evaluate( am );
+    }
+
     protected abstract Double evaluateSpectogram( List<List<Double>> target, List<List<Double>> candidate );
 }